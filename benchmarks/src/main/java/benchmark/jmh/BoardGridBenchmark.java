@@ -0,0 +1,168 @@
+/* BoardGridBenchmark.java
+ * Konane Game System
+ * MIT IEEE IAP Programming Competition 2001
+ */
+
+package benchmark.jmh;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Vector;
+import java.util.concurrent.TimeUnit;
+import konaneCommon.*;
+import org.openjdk.jmh.annotations.*;
+
+/** JMH benchmarks of the {@link konaneCommon.BoardGrid} methods that
+ * players and the simulator call most.
+
+ * <p>Each benchmark works on one position at a time, cycling through the
+ * mid-game positions of the chosen board size found in the simulator log
+ * (see {@link Positions}), so a score is the number of calls per second
+ * averaged over real positions. The sizes are those of the games in the
+ * log.</p>
+
+ * <p>Build and run from the top of the tree:</p>
+ * <pre>
+ * mvn -B package
+ * java -jar benchmarks/target/benchmarks.jar -prof gc
+ * </pre>
+ * <p><code>-prof gc</code> adds the allocation rate, as
+ * <code>gc.alloc.rate.norm</code> bytes per call, to every score. A
+ * pattern such as <code>BoardGridBenchmark.getAllMoves</code> selects
+ * benchmarks, and <code>-p size=10x8</code> a board size.</p>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BoardGridBenchmark {
+
+    /** The board size, as <code>width</code>x<code>height</code>. */
+    @Param({"9x7", "10x8", "11x7"})
+    public String size;
+
+    private BoardGrid[] boards;
+    private byte[] sides;
+
+    /** The legal moves of each position, packed. */
+    private int[][] moves;
+
+    /** Moves to validate on each position: the legal moves, each of them
+     * backwards, and each of them for the other side. */
+    private Move[][] candidates;
+
+    /** Scratch boards the mutating benchmarks play on, one per
+     * position. */
+    private BoardGrid[] scratch;
+
+    private final MoveList list = new MoveList();
+
+    /** The position of the current call. */
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+	Konane.verbose = false;
+	Positions positions = Positions.load(size);
+	boards = positions.boards;
+	sides = positions.sides;
+	moves = new int[boards.length][];
+	candidates = new Move[boards.length][];
+	scratch = new BoardGrid[boards.length];
+	for (int i = 0; i < boards.length; i++) {
+	    MoveList legal = new MoveList();
+	    boards[i].generateMoves(sides[i], legal);
+	    moves[i] = new int[legal.size()];
+	    List<Move> tries = new ArrayList<Move>();
+	    for (int j = 0; j < legal.size(); j++) {
+		int move = legal.get(j);
+		moves[i][j] = move;
+		tries.add(legal.moveAt(j));
+		tries.add(new Move(MoveList.finalCol(move),
+				   MoveList.finalRow(move),
+				   MoveList.initialCol(move),
+				   MoveList.initialRow(move),
+				   sides[i], ""));
+		tries.add(new Move(MoveList.initialCol(move),
+				   MoveList.initialRow(move),
+				   MoveList.finalCol(move),
+				   MoveList.finalRow(move),
+				   (byte)~sides[i], ""));
+	    }
+	    candidates[i] = tries.toArray(new Move[tries.size()]);
+	    scratch[i] = boards[i].copy();
+	}
+    }
+
+    /** Moves on to the next position. */
+    private int advance() {
+	next = (next + 1 == boards.length) ? 0 : next + 1;
+	return next;
+    }
+
+    @Benchmark
+    public Vector getAllMoves() {
+	int i = advance();
+	return boards[i].getAllMoves(sides[i]);
+    }
+
+    @Benchmark
+    public int generateMoves() {
+	int i = advance();
+	list.clear();
+	return boards[i].generateMoves(sides[i], list);
+    }
+
+    /** Validates every candidate move of a position. */
+    @Benchmark
+    public int isValidMove() {
+	int i = advance();
+	int valid = 0;
+	Move[] tries = candidates[i];
+	for (int j = 0; j < tries.length; j++) {
+	    if (boards[i].isValidMove(tries[j])) {
+		valid++;
+	    }
+	}
+	return valid;
+    }
+
+    /** Makes a legal move with {@link konaneCommon.Move} validation, as a
+     * simulator does, and takes it back. */
+    @Benchmark
+    public boolean makeMove() {
+	int i = advance();
+	int move = moves[i][next % moves[i].length];
+	BoardGrid board = scratch[i];
+	boolean made = board.makeMove(MoveList.toMove(move));
+	board.unmakeMove(move);
+	return made;
+    }
+
+    /** Makes and unmakes a packed move, as a search does. */
+    @Benchmark
+    public int makeUnmakeMove() {
+	int i = advance();
+	int move = moves[i][next % moves[i].length];
+	BoardGrid board = scratch[i];
+	int undo = board.makeMove(move);
+	board.unmakeMove(undo);
+	return undo;
+    }
+
+    @Benchmark
+    public BoardGrid copy() {
+	int i = advance();
+	return boards[i].copy();
+    }
+
+    @Benchmark
+    public String toStringBoard() {
+	int i = advance();
+	return boards[i].toString();
+    }
+
+}
@@ -0,0 +1,127 @@
+/* Positions.java
+ * Konane Game System
+ * MIT IEEE IAP Programming Competition 2001
+ */
+
+package benchmark.jmh;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.List;
+import konaneCommon.*;
+
+/** Positions from real games, read from the boards printed in the
+ * simulator log <code>simulator/sample.out</code>.
+
+ * <p>The log prints the board at the start of every turn, after a line
+ * naming the side to move. Only mid-game positions are kept: the opening
+ * removals must have been followed by at least one jump, and the side to
+ * move must still have a move.</p>
+ */
+final class Positions {
+
+    /** The log, as packaged on the benchmark class path. */
+    private final static String LOG = "/simulator/sample.out";
+
+    /** The boards, and the side to move on each. */
+    final BoardGrid[] boards;
+    final byte[] sides;
+
+    private Positions(List<BoardGrid> boards, List<Byte> sides) {
+	this.boards = boards.toArray(new BoardGrid[boards.size()]);
+	this.sides = new byte[sides.size()];
+	for (int i = 0; i < this.sides.length; i++) {
+	    this.sides[i] = sides.get(i);
+	}
+    }
+
+    /** Loads the mid-game positions on boards of the given size.
+     * @exception IllegalArgumentException if the log has none.
+     */
+    static Positions load(int width, int height) throws IOException {
+	List<BoardGrid> boards = new ArrayList<BoardGrid>();
+	List<Byte> sides = new ArrayList<Byte>();
+	InputStream in = Positions.class.getResourceAsStream(LOG);
+	if (in == null) {
+	    throw new IOException(LOG + " is not on the class path");
+	}
+	BufferedReader reader = new BufferedReader(new InputStreamReader(in));
+	try {
+	    int logWidth = 0, logHeight = 0;
+	    String line;
+	    while ((line = reader.readLine()) != null) {
+		if (line.startsWith("Initializing ")) {
+		    String[] words = line.split(" ");
+		    logWidth = Integer.parseInt(words[1]);
+		    logHeight = Integer.parseInt(words[3]);
+		}
+		else if (line.startsWith("Beginning ") &&
+			 line.contains("'s turn")) {
+		    byte side = line.startsWith("Beginning WHITE") ?
+			Konane.WHITE : Konane.BLACK;
+		    BoardGrid board = read(reader, logWidth, logHeight);
+		    if (board != null && logWidth == width &&
+			logHeight == height && board.getEmptyCount() > 2 &&
+			board.hasAnyMove(side)) {
+			boards.add(board);
+			sides.add(side);
+		    }
+		}
+	    }
+	}
+	finally {
+	    reader.close();
+	}
+	if (boards.isEmpty()) {
+	    throw new IllegalArgumentException("no " + width + "x" + height +
+					       " positions in " + LOG);
+	}
+	return new Positions(boards, sides);
+    }
+
+    /** Loads the positions for a size written as
+     * <code>width</code>x<code>height</code>. */
+    static Positions load(String size) throws IOException {
+	int x = size.indexOf('x');
+	return load(Integer.parseInt(size.substring(0, x)),
+		    Integer.parseInt(size.substring(x + 1)));
+    }
+
+    /** Reads a board printed one row per line by
+     * {@link konaneCommon.BoardGrid#toString()}.
+     * @return the board, or null if the lines do not hold one.
+     */
+    private static BoardGrid read(BufferedReader reader, int width,
+				  int height) throws IOException {
+	byte[][] tokens = new byte[width][height];
+	for (int row = 0; row < height; row++) {
+	    String line = reader.readLine();
+	    if (line == null) {
+		return null;
+	    }
+	    String[] words = line.trim().split(" ");
+	    if (words.length != width) {
+		return null;
+	    }
+	    for (int col = 0; col < width; col++) {
+		if (words[col].equals("W")) {
+		    tokens[col][row] = Konane.WHITE;
+		}
+		else if (words[col].equals("B")) {
+		    tokens[col][row] = Konane.BLACK;
+		}
+		else if (words[col].equals("_")) {
+		    tokens[col][row] = Konane.NONE;
+		}
+		else {
+		    return null;
+		}
+	    }
+	}
+	return new BoardGrid(tokens, width, height);
+    }
+
+}
@@ -0,0 +1,154 @@
+/* Player.java
+ * Konane Game System
+ * MIT IEEE IAP Programming Competition 2001
+ */
+
+package alphabeta;
+
+import konaneCommon.*;
+import konaneEngine.*;
+
+/** A player that searches with {@link konaneEngine.ParallelSearch}.
+
+ * <p>Each move is given its share of the remaining time by a
+ * {@link konaneEngine.TimeManager}, and the search deepens until that
+ * share is used up. The transposition table is kept from move to move, so
+ * each search starts with what the previous ones learnt. After every move
+ * the player prints the statistics line that tournament engines print.</p>
+
+ * <p>The search uses one thread per processor unless the system property
+ * <code>alphabeta.threads</code> gives another number.</p>
+
+ * <p>While the opponent thinks, the player ponders: it takes the reply
+ * its last search expected from the transposition table and searches the
+ * position after it. If the opponent makes that reply the player answers
+ * at once with the move it found, provided that search went at least as
+ * deep as its last ordinary one; otherwise it searches as usual, starting
+ * from the table the pondering has filled.</p>
+
+ * <p>Load it in the simulator as <code>alphabeta</code>.</p>
+ */
+public class Player extends PonderingPlayer {
+
+    /** Size of the transposition table, in megabytes. */
+    public final static int TABLE_MEGABYTES = 32;
+
+    private final TranspositionTable table =
+	TranspositionTable.ofMegabytes(TABLE_MEGABYTES,
+				       TranspositionTable.DEPTH_PREFERRED);
+
+    /** The number of search threads. */
+    public final static int THREADS =
+	Integer.getInteger("alphabeta.threads",
+			   Runtime.getRuntime().availableProcessors())
+	.intValue();
+
+    private final ParallelSearch search = new ParallelSearch(table, THREADS);
+
+    /** The thread that ponders, or null when the player is not
+     * pondering. */
+    private Thread ponderThread;
+
+    /** The position after the expected reply, or null if there is none. */
+    private BoardGrid ponderBoard;
+
+    /** The move and depth found by the last pondering search. */
+    private int ponderMove = MoveList.NO_MOVE;
+    private int ponderDepth;
+
+    /** The depth reached by the last ordinary search. */
+    private int lastDepth;
+
+    public Move makeMove(BoardGrid oldBoard, long allowedTime) {
+	int move;
+	if (ponderBoard != null && ponderMove != MoveList.NO_MOVE &&
+	    ponderDepth >= lastDepth &&
+	    ponderBoard.getHash() == oldBoard.getHash()) {
+	    move = ponderMove;
+	    if (Konane.verbose) {
+		System.out.println(search.getStats() + ", ponder hit");
+	    }
+	}
+	else {
+	    TimeManager time = new TimeManager(oldBoard, allowedTime);
+	    table.newSearch();
+	    move = search.search(oldBoard, side, Search.MAX_PLY,
+				 time.getSoftDeadline(),
+				 time.getHardDeadline());
+	    lastDepth = search.getDepth();
+	    if (Konane.verbose) {
+		System.out.println(search.getStats());
+	    }
+	}
+	ponderBoard = null;
+	ponderMove = MoveList.NO_MOVE;
+	if (move == MoveList.NO_MOVE) {
+	    return new Move(-1, -1, -1, -1, side, "**FORFEIT**");
+	}
+	return Move.of(oldBoard.getWidth(), oldBoard.getHeight(),
+		       MoveList.initialCol(move), MoveList.initialRow(move),
+		       MoveList.finalCol(move), MoveList.finalRow(move),
+		       side);
+    }
+
+    public void startPondering(BoardGrid board) {
+	stopPondering();
+	byte opponent = (byte)~side;
+	long data = table.probe(board.getHash(opponent));
+	int reply = TranspositionTable.move(data);
+	// The entry may belong to another position that shares its slot.
+	if (reply == MoveList.NO_MOVE ||
+	    !board.isLegalMove(MoveList.initialCol(reply),
+			       MoveList.initialRow(reply),
+			       MoveList.finalCol(reply),
+			       MoveList.finalRow(reply), opponent)) {
+	    return;
+	}
+	final BoardGrid expected = board.copy();
+	expected.makeMove(reply);
+	if (!expected.hasAnyMove(side)) {
+	    return;
+	}
+	ponderBoard = expected;
+	table.newSearch();
+	ponderThread = new Thread("alphabeta ponder") {
+		public void run() {
+		    ponderMove = search.search(expected, side, Search.MAX_PLY,
+					       Search.NO_DEADLINE,
+					       Search.NO_DEADLINE);
+		    ponderDepth = search.getDepth();
+		}
+	    };
+	ponderThread.setDaemon(true);
+	ponderThread.start();
+    }
+
+    public void stopPondering() {
+	if (ponderThread == null) {
+	    return;
+	}
+	// A search that has not started yet would clear the stop flag when
+	// it did, so keep stopping it until the thread has finished.
+	boolean interrupted = false;
+	while (ponderThread.isAlive()) {
+	    search.stop();
+	    try {
+		ponderThread.join(1);
+	    }
+	    catch (InterruptedException e) {
+		interrupted = true;
+	    }
+	}
+	ponderThread = null;
+	if (interrupted) {
+	    Thread.currentThread().interrupt();
+	}
+    }
+
+    /** Stops pondering and the search threads. */
+    public void endGame() {
+	stopPondering();
+	search.shutdown();
+    }
+
+}
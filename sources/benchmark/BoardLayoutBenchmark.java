@@ -0,0 +1,198 @@
+/* BoardLayoutBenchmark.java
+ * Konane Game System
+ * MIT IEEE IAP Programming Competition 2001
+ */
+
+package benchmark;
+
+import java.util.Random;
+import konaneCommon.*;
+
+/** Compares the flat, bordered board layout of
+ * {@link konaneCommon.BoardGrid} with the two-dimensional
+ * <code>tokens</code> array it replaced.
+
+ * <p>For each board size a set of mid-game positions is produced as in
+ * {@link benchmark.MoveGenBenchmark}. Move generation and
+ * <code>toString()</code> are then timed twice: once through the methods
+ * of <code>BoardGrid</code>, which use the flat array (and, for move
+ * generation, start from the empty squares), and once through copies of
+ * the previous implementations, which read <code>tokens[col][row]</code>
+ * with a bounds check on every probe.</p>
+
+ * <p>Usage: <code>java -cp classes benchmark.BoardLayoutBenchmark
+ * [passes [size ...]]</code></p>
+ */
+public final class BoardLayoutBenchmark {
+
+    /** Number of positions generated for each board size. */
+    private final static int POSITIONS = 64;
+
+    /** Number of those positions printed, since the previous
+     * <code>toString()</code> takes quadratic time on large boards. */
+    private final static int PRINTED = 4;
+
+    /** Board sizes measured when none are given on the command line. */
+    private final static int[] SIZES = { 7, 9, 11, 15, 31, 64, 127 };
+
+    private BoardLayoutBenchmark() {}
+
+    /** The previous move generator, which scans
+     * <code>tokens[col][row]</code> and checks every probe against the
+     * board's dimensions. */
+    static int legacyGenerate(BoardGrid board, byte side, MoveList out) {
+	byte[][] tokens = board.tokens;
+	int width = board.getWidth();
+	int height = board.getHeight();
+	byte opponent = (byte)~side;
+	int count = out.size();
+	for (int i = 0; i < width; i++) {
+	    byte[] column = tokens[i];
+	    for (int j = 0; j < height; j++) {
+		if (column[j] != side) {
+		    continue;
+		}
+		for (int k = j + 2; (k < height) &&
+			 (column[k - 1] == opponent) &&
+			 (column[k] == Konane.NONE); k += 2) {
+		    out.add(MoveList.pack(i, j, i, k, side));
+		}
+		for (int k = j - 2; (k >= 0) &&
+			 (column[k + 1] == opponent) &&
+			 (column[k] == Konane.NONE); k -= 2) {
+		    out.add(MoveList.pack(i, j, i, k, side));
+		}
+		for (int k = i + 2; (k < width) &&
+			 (tokens[k - 1][j] == opponent) &&
+			 (tokens[k][j] == Konane.NONE); k += 2) {
+		    out.add(MoveList.pack(i, j, k, j, side));
+		}
+		for (int k = i - 2; (k >= 0) &&
+			 (tokens[k + 1][j] == opponent) &&
+			 (tokens[k][j] == Konane.NONE); k -= 2) {
+		    out.add(MoveList.pack(i, j, k, j, side));
+		}
+	    }
+	}
+	return out.size() - count;
+    }
+
+    /** The previous <code>toString()</code>, which walks the columns of
+     * <code>tokens</code> across each row. */
+    static String legacyToString(BoardGrid board) {
+	String temp = new String();
+	for (int i = 0; i < board.getHeight(); i++) {
+	    for (int j = 0; j < board.getWidth(); j++) {
+		byte token = board.tokens[j][i];
+		if (token == Konane.WHITE) {
+		    temp += "W ";
+		}
+		else if (token == Konane.BLACK) {
+		    temp += "B ";
+		}
+		else {
+		    temp += "_ ";
+		}
+	    }
+	    temp += "\n";
+	}
+	return temp;
+    }
+
+    /** Generates the moves of both sides of every board
+     * <code>passes</code> times and returns the number of moves found. */
+    static long generate(BoardGrid[] boards, int passes, boolean legacy) {
+	MoveList list = new MoveList();
+	long total = 0;
+	for (int pass = 0; pass < passes; pass++) {
+	    for (int i = 0; i < boards.length; i++) {
+		list.clear();
+		if (legacy) {
+		    total += legacyGenerate(boards[i], Konane.WHITE, list);
+		    total += legacyGenerate(boards[i], Konane.BLACK, list);
+		}
+		else {
+		    total += boards[i].generateMoves(Konane.WHITE, list);
+		    total += boards[i].generateMoves(Konane.BLACK, list);
+		}
+	    }
+	}
+	return total;
+    }
+
+    /** Prints every board <code>passes</code> times and returns the number
+     * of characters produced. */
+    static long print(BoardGrid[] boards, int passes, boolean legacy) {
+	long total = 0;
+	for (int pass = 0; pass < passes; pass++) {
+	    for (int i = 0; i < boards.length; i++) {
+		total += (legacy ? legacyToString(boards[i]) :
+			  boards[i].toString()).length();
+	    }
+	}
+	return total;
+    }
+
+    /** Times {@link #generate(BoardGrid[], int, boolean)} and returns
+     * moves per second. */
+    static double generateRate(BoardGrid[] boards, int passes,
+			       boolean legacy) {
+	generate(boards, Math.max(1, passes / 10), legacy);
+	long start = System.nanoTime();
+	long moves = generate(boards, passes, legacy);
+	long elapsed = System.nanoTime() - start;
+	return moves * 1e9 / Math.max(1, elapsed);
+    }
+
+    /** Times {@link #print(BoardGrid[], int, boolean)} and returns boards
+     * printed per second. */
+    static double printRate(BoardGrid[] boards, int passes, boolean legacy) {
+	print(boards, Math.max(1, passes / 10), legacy);
+	long start = System.nanoTime();
+	print(boards, passes, legacy);
+	long elapsed = System.nanoTime() - start;
+	return (double)passes * boards.length * 1e9 / Math.max(1, elapsed);
+    }
+
+    public static void main(String[] args) {
+	int passes = (args.length > 0) ? Integer.parseInt(args[0]) : 200;
+	int[] sizes = SIZES;
+	if (args.length > 1) {
+	    sizes = new int[args.length - 1];
+	    for (int i = 1; i < args.length; i++) {
+		sizes[i - 1] = Integer.parseInt(args[i]);
+	    }
+	}
+	Konane.verbose = false;
+	Random random = new Random(2001);
+
+	System.out.println("size      byte[][] moves/s  flat moves/s      " +
+			   "speedup  byte[][] prints/s flat prints/s     " +
+			   "speedup");
+	for (int i = 0; i < sizes.length; i++) {
+	    int size = sizes[i];
+	    BoardGrid[] boards =
+		MoveGenBenchmark.positions(size, size, POSITIONS, random);
+	    int scaled = Math.max(1, passes * 49 / (size * size));
+	    double oldMoves = generateRate(boards, scaled, true);
+	    double newMoves = generateRate(boards, scaled, false);
+	    BoardGrid[] printed = new BoardGrid[PRINTED];
+	    System.arraycopy(boards, 0, printed, 0, PRINTED);
+	    double oldPrints = printRate(printed, scaled, true);
+	    double newPrints = printRate(printed, scaled, false);
+	    System.out.println(pad(size + "x" + size, 10) +
+			       pad(Math.round(oldMoves), 18) +
+			       pad(Math.round(newMoves), 18) +
+			       MoveGenBenchmark.pad(MoveGenBenchmark.format(
+				   newMoves / oldMoves), 9) +
+			       pad(Math.round(oldPrints), 18) +
+			       pad(Math.round(newPrints), 18) +
+			       MoveGenBenchmark.format(newPrints / oldPrints));
+	}
+    }
+
+    private static String pad(Object value, int width) {
+	return MoveGenBenchmark.pad(String.valueOf(value), width);
+    }
+
+}
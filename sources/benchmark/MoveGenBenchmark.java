@@ -0,0 +1,124 @@
+/* MoveGenBenchmark.java
+ * Konane Game System
+ * MIT IEEE IAP Programming Competition 2001
+ */
+
+package benchmark;
+
+import java.util.Random;
+import java.util.Vector;
+import konaneCommon.*;
+
+/** Compares move generation on {@link konaneCommon.BoardGrid} and
+ * {@link konaneCommon.BitBoardGrid}.
+
+ * <p>For each board size a set of mid-game positions is produced by random
+ * play from the starting position. Both board classes then generate every
+ * move for both sides of every position for a fixed number of passes, and
+ * the number of moves generated per second is printed.</p>
+
+ * <p>Usage: <code>java -cp classes benchmark.MoveGenBenchmark
+ * [passes [size ...]]</code></p>
+ */
+public final class MoveGenBenchmark {
+
+    /** Number of positions generated for each board size. */
+    private final static int POSITIONS = 64;
+
+    /** Board sizes measured when none are given on the command line. */
+    private final static int[] SIZES = { 7, 9, 11, 15, 31, 64, 127 };
+
+    private MoveGenBenchmark() {}
+
+    /** Plays random moves from the starting position and collects a copy of
+     * the board every few plies. */
+    static BoardGrid[] positions(int width, int height, int count,
+				 Random random) {
+	BoardGrid[] positions = new BoardGrid[count];
+	int found = 0;
+	while (found < count) {
+	    BoardGrid board = new BoardGrid(width, height);
+	    byte side = Konane.WHITE;
+	    while (found < count) {
+		Vector moves = board.getAllMoves(side);
+		if (moves.size() == 0) {
+		    break;
+		}
+		int index = random.nextInt(moves.size());
+		board.makeMove((Move)moves.elementAt(index));
+		side = (byte)~side;
+		if (random.nextInt(3) == 0) {
+		    positions[found++] = board.copy();
+		}
+	    }
+	}
+	return positions;
+    }
+
+    /** Generates all moves for both sides of every board
+     * <code>passes</code> times and returns the number of moves found. */
+    static long generate(BoardGrid[] boards, int passes) {
+	long total = 0;
+	for (int pass = 0; pass < passes; pass++) {
+	    for (int i = 0; i < boards.length; i++) {
+		total += boards[i].getAllMoves(Konane.WHITE).size();
+		total += boards[i].getAllMoves(Konane.BLACK).size();
+	    }
+	}
+	return total;
+    }
+
+    /** Times {@link #generate(BoardGrid[], int)} and returns moves per
+     * second. */
+    static double rate(BoardGrid[] boards, int passes) {
+	generate(boards, Math.max(1, passes / 10));
+	long start = System.nanoTime();
+	long moves = generate(boards, passes);
+	long elapsed = System.nanoTime() - start;
+	return moves * 1e9 / Math.max(1, elapsed);
+    }
+
+    public static void main(String[] args) {
+	int passes = (args.length > 0) ? Integer.parseInt(args[0]) : 200;
+	int[] sizes = SIZES;
+	if (args.length > 1) {
+	    sizes = new int[args.length - 1];
+	    for (int i = 1; i < args.length; i++) {
+		sizes[i - 1] = Integer.parseInt(args[i]);
+	    }
+	}
+	Konane.verbose = false;
+	Random random = new Random(2001);
+
+	System.out.println("size      BoardGrid moves/s " +
+			   "bitboard moves/s  speedup");
+	for (int i = 0; i < sizes.length; i++) {
+	    int size = sizes[i];
+	    BoardGrid[] grids = positions(size, size, POSITIONS, random);
+	    BoardGrid[] bits = new BoardGrid[grids.length];
+	    for (int j = 0; j < grids.length; j++) {
+		bits[j] = new BitBoardGrid(grids[j].tokens, size, size);
+	    }
+	    int scaled = Math.max(1, passes * 49 / (size * size));
+	    double gridRate = rate(grids, scaled);
+	    double bitRate = rate(bits, scaled);
+	    System.out.println(pad(size + "x" + size, 10) +
+			       pad(String.valueOf(Math.round(gridRate)), 18) +
+			       pad(String.valueOf(Math.round(bitRate)), 18) +
+			       format(bitRate / gridRate));
+	}
+    }
+
+    static String format(double value) {
+	return String.valueOf(Math.round(value * 100) / 100.0);
+    }
+
+    static String pad(String s, int width) {
+	StringBuffer buffer = new StringBuffer(s);
+	while (buffer.length() < width) {
+	    buffer.append(' ');
+	}
+	return buffer.toString();
+    }
+
+}
@@ -0,0 +1,97 @@
+/* ParallelSearchBenchmark.java
+ * Konane Game System
+ * MIT IEEE IAP Programming Competition 2001
+ */
+
+package benchmark;
+
+import java.util.Random;
+import konaneCommon.*;
+import konaneEngine.*;
+
+/** Measures how {@link konaneEngine.ParallelSearch} scales with the
+ * number of threads.
+
+ * <p>A set of mid-game positions is produced by random play, as in
+ * {@link benchmark.MoveGenBenchmark}, and each is searched to a fixed
+ * depth with a fresh transposition table, once for each thread count: 1,
+ * 2, 4, 8 and the number of processors, after a shallower warm-up
+ * pass. For each count the benchmark
+ * prints the total time to reach the depth, its speedup over one thread,
+ * and the number of nodes searched per second by all threads
+ * together.</p>
+
+ * <p>Usage: <code>java -cp classes benchmark.ParallelSearchBenchmark
+ * [depth [size [positions]]]</code></p>
+ */
+public final class ParallelSearchBenchmark {
+
+    /** Size of the transposition table, in megabytes. */
+    private final static int TABLE_MEGABYTES = 64;
+
+    private ParallelSearchBenchmark() {}
+
+    /** Searches every position to <code>depth</code> with a fresh table.
+     * @return the nanoseconds taken and the nodes searched.
+     */
+    static long[] measure(BoardGrid[] positions, int depth, int threads) {
+	long nodes = 0;
+	long elapsed = 0;
+	for (int j = 0; j < positions.length; j++) {
+	    // Positions are taken every few plies, so either side may be to
+	    // move; search for the side that has moves.
+	    byte side = positions[j].hasAnyMove(Konane.WHITE) ?
+		Konane.WHITE : Konane.BLACK;
+	    ParallelSearch search = new ParallelSearch(
+		TranspositionTable.ofMegabytes(
+		    TABLE_MEGABYTES, TranspositionTable.DEPTH_PREFERRED),
+		threads);
+	    long start = System.nanoTime();
+	    search.search(positions[j], side, depth, Search.NO_DEADLINE,
+			  Search.NO_DEADLINE);
+	    elapsed += System.nanoTime() - start;
+	    nodes += search.getNodes();
+	    search.shutdown();
+	}
+	return new long[] { elapsed, nodes };
+    }
+
+    public static void main(String[] args) {
+	int depth = (args.length > 0) ? Integer.parseInt(args[0]) : 9;
+	int size = (args.length > 1) ? Integer.parseInt(args[1]) : 9;
+	int count = (args.length > 2) ? Integer.parseInt(args[2]) : 8;
+	Konane.verbose = false;
+	BoardGrid[] positions =
+	    MoveGenBenchmark.positions(size, size, count, new Random(2001));
+
+	int processors = Runtime.getRuntime().availableProcessors();
+	int[] counts = { 1, 2, 4, 8, processors };
+	System.out.println(size + "x" + size + ", depth " + depth + ", " +
+			   count + " positions, " + processors +
+			   " processors");
+	System.out.println("threads   time ms   speedup   nodes/s");
+	measure(positions, depth - 1, 1);
+	double single = 0;
+	for (int i = 0; i < counts.length; i++) {
+	    int threads = counts[i];
+	    if (i == counts.length - 1 && threads <= 8 &&
+		(threads & (threads - 1)) == 0) {
+		continue;
+	    }
+	    long[] result = measure(positions, depth, threads);
+	    long elapsed = result[0];
+	    long nodes = result[1];
+	    double millis = elapsed / 1e6;
+	    if (threads == 1) {
+		single = millis;
+	    }
+	    System.out.println(
+		MoveGenBenchmark.pad(String.valueOf(threads), 10) +
+		MoveGenBenchmark.pad(String.valueOf(Math.round(millis)), 10) +
+		MoveGenBenchmark.pad(MoveGenBenchmark.format(single / millis),
+				     10) +
+		Math.round(nodes * 1e9 / Math.max(1, elapsed)));
+	}
+    }
+
+}
@@ -24,16 +24,18 @@ final class ClientThread extends commonThread.ServerThread {
     /** Package name to load for this client's {@link konaneCommon.Player}. */
     private static String name;
 
-    /** Total time in milliseconds left for this client's
+    /** Total time in nanoseconds left for this client's
      * {@link konaneCommon.Player} in the current game. */
     private long timeLeft;
 
-    /** System time at which a move began in milliseconds. */
-    private long timeBegan;
-
-    /** Time elapsed in milliseconds during a move. */
+    /** Time elapsed in nanoseconds during a move. */
     private long transitTime;
 
+    /** Processor time in nanoseconds used during a move, or -1 if it is
+     * not known. Charged instead of {@link #transitTime} when
+     * {@link konaneCommon.PlayerWorker#CPU_CLOCK} is set. */
+    private long cpuTime;
+
     /** The local copy of board state for this client. This state is updated
      * by moves from this client's {@link konaneCommon.Player} and from the
      * opposing {@link konaneCommon.Player} through the server. */
@@ -42,15 +44,24 @@ final class ClientThread extends commonThread.ServerThread {
     /** The {@link konaneCommon.Move} returned by the player. */
     private Move playerMove;
 
+    /** True if {@link #makeMove()} accepted the player's move and made it
+     * on {@link #boardGrid}. */
+    private boolean moveApplied;
+
     /** The {@link konaneCommon.Player} for this client. */
     private Player player;
 
+    /** Creates the players, loading each package once. */
+    private final PlayerLoader loader = new PlayerLoader();
+
+    /** Runs the moves of {@link #player}. */
+    private PlayerWorker worker;
+
     /** The parent client for this thread. */
     private KonaneClient parent;
 
-    /** Flag signalling when a {@link konaneCommon.Player} has finished making
-     * a move. */
-    private boolean moveFinished = false;
+    /** Milliseconds a player that runs out of time is given to stop. */
+    private final static long GRACE = 1000;
 
     /** Constructor that accepts a <code>serverSocket</code> on which to
      * listen for a connection and a reference to the parent client. */
@@ -81,17 +92,18 @@ final class ClientThread extends commonThread.ServerThread {
 
 	case Konane.DISCONNECT:
 	    print("Connection closed by server.");
+	    endGame();
+	    closeWorker();
+	    loader.unloadAll();
 	    terminate = true;
 	    break;
 
 	case Konane.NAME:
 	    name = new String(recvBuffer, 1, count - 1);
 	    print("Received name: " + name);
-	    PlayerClassLoader classLoader = new PlayerClassLoader();
+	    endGame();
 	    try {
-		player =
-		    (Player)classLoader.loadClass(name +
-						  ".Player").newInstance();
+		player = loader.newPlayer(name);
 		player.setSide(parent.side);
 	    }
 	    catch (Exception e) {
@@ -101,28 +113,31 @@ final class ClientThread extends commonThread.ServerThread {
 		}
 		System.err.println(error);
 	    }
+	    closeWorker();
+	    worker = new PlayerWorker(player, "Player " + name);
 	    print("Player loaded.");
 	    sendBuffer[0] = Konane.NAME_ACK;
 	    output(sendBuffer, 1);
 	    break;
 
 	case Konane.TIME:
-	    timeLeft = 0;
-	    timeLeft |= (0xFF00000000000000L & (recvBuffer[1] << 56));
-	    timeLeft |= (0x00FF000000000000L & (recvBuffer[2] << 48));
-	    timeLeft |= (0x0000FF0000000000L & (recvBuffer[3] << 40));
-	    timeLeft |= (0x000000FF00000000L & (recvBuffer[4] << 32));
-	    timeLeft |= (0x00000000FF000000L & (recvBuffer[5] << 24));
-	    timeLeft |= (0x0000000000FF0000L & (recvBuffer[6] << 16));
-	    timeLeft |= (0x000000000000FF00L & (recvBuffer[7] << 8));
-	    timeLeft |= (0x00000000000000FFL & recvBuffer[8]);
-	    print("Received time: " + timeLeft);
+	    long time = 0;
+	    time |= (0xFF00000000000000L & (recvBuffer[1] << 56));
+	    time |= (0x00FF000000000000L & (recvBuffer[2] << 48));
+	    time |= (0x0000FF0000000000L & (recvBuffer[3] << 40));
+	    time |= (0x000000FF00000000L & (recvBuffer[4] << 32));
+	    time |= (0x00000000FF000000L & (recvBuffer[5] << 24));
+	    time |= (0x0000000000FF0000L & (recvBuffer[6] << 16));
+	    time |= (0x000000000000FF00L & (recvBuffer[7] << 8));
+	    time |= (0x00000000000000FFL & recvBuffer[8]);
+	    timeLeft = time * 1000000L;
+	    print("Received time: " + time);
 	    sendBuffer[0] = Konane.TIME_ACK;
 	    output(sendBuffer, 1);
 	    break;
 
 	case Konane.BEGIN_TURN:
-	    print("Beginning turn. Time left: " + timeLeft);
+	    print("Beginning turn. Time left: " + millis(timeLeft));
 	    Move playerMove = makeMove();
 	    sendBuffer[0] = Konane.BEGIN_TURN_ACK;
 	    sendBuffer[1] = (byte)playerMove.getInitialCol();
@@ -135,7 +150,10 @@ final class ClientThread extends commonThread.ServerThread {
 		sendBuffer[i + 5] = (byte)temp.charAt(i);
 	    }
 	    output(sendBuffer, temp.length() + 5);
-	    print("Finishing turn. Time left: " + timeLeft);
+	    print("Finishing turn. Time left: " + millis(timeLeft));
+	    if (moveApplied) {
+		startPondering();
+	    }
 	    break;
 
 	case Konane.END_TURN:
@@ -162,9 +180,10 @@ final class ClientThread extends commonThread.ServerThread {
 
 	case Konane.MOVE:
 	    String comment = new String(recvBuffer, 6, count - 6);
-	    Move tempMove = new Move(recvBuffer[1], recvBuffer[2],
-				     recvBuffer[3], recvBuffer[4],
-				     recvBuffer[5], comment);
+	    Move tempMove = Move.of(boardGrid.getWidth(), boardGrid.getHeight(),
+				    recvBuffer[1], recvBuffer[2],
+				    recvBuffer[3], recvBuffer[4],
+				    recvBuffer[5], comment);
 	    print("Received move: " + tempMove.toString());
 	    if (boardGrid.makeMove(tempMove)) {
 		print("Move successful. New board: \n" + boardGrid.toString());
@@ -177,6 +196,8 @@ final class ClientThread extends commonThread.ServerThread {
 	    break;
 	case Konane.RESET:
 	    print("Resetting client.");
+	    endGame();
+	    closeWorker();
 	    parent.signalReset();
 	    break;
 	}
@@ -188,18 +209,25 @@ final class ClientThread extends commonThread.ServerThread {
 	KonaneClient.print(message);
     }
 
-    /** Instantiates a <code>PlayerThread</code> and calls
-     * {@link konaneCommon.Player@makeMove(konaneCommon.BoardGrid, long)}.
+    /** Hands the move to the player's {@link konaneCommon.PlayerWorker}
+     * and waits for it, which calls
+     * {@link konaneCommon.Player#makeMove(konaneCommon.BoardGrid,
+     * konaneCommon.Deadline)}.
      * Performs necessary cleanup and display of debugging information.
      */
-    private synchronized Move makeMove() {
+    private Move makeMove() {
         playerMove = null;
-	moveFinished = false;
-	PlayerThread playerThread = new PlayerThread(this);
-	playerThread.start();
+	moveApplied = false;
+	if (worker == null) {
+	    print("No player is loaded.");
+	    return new Move(-1, -1, -1, -1, parent.side, "**ERROR**");
+	}
+	boolean moveFinished = false;
+	worker.startMove(boardGrid.copy(),
+			 new Deadline(millis(timeLeft), GRACE));
 
 	try {
-	    wait(timeLeft);
+	    moveFinished = worker.awaitMove();
 	}
 	catch(InterruptedException e) {
 	    System.err.println(e.toString());
@@ -207,10 +235,17 @@ final class ClientThread extends commonThread.ServerThread {
 
 	if (!moveFinished) {
 	    print("Player exceeded time limit.");
+	    if (!worker.cancel()) {
+		print("Player did not stop.");
+	    }
 	    return new Move(-1, -1, -1, -1, parent.side, "**TIME**");
 	}
 	else {
-	    timeLeft -= transitTime;
+	    playerMove = worker.getMove();
+	    transitTime = worker.getElapsed();
+	    cpuTime = worker.getCpuTime();
+	    timeLeft -= PlayerWorker.CPU_CLOCK ?
+		PlayerWorker.charge(transitTime, cpuTime) : transitTime;
 	    if (timeLeft < 0) {
 		print("Player exceeded time limit.");
 		return new Move(-1, -1, -1, -1, parent.side, "**TIME**");
@@ -229,46 +264,63 @@ final class ClientThread extends commonThread.ServerThread {
 	    }
 	}
 
+	moveApplied = true;
 	print("Player's move: " + playerMove.toString());
-	print("  in " + transitTime + " milliseconds.");
+	print("  in " + String.format("%.3f", transitTime / 1e6) +
+	      " milliseconds" + ((cpuTime < 0) ? "" :
+				 " (" + String.format("%.3f", cpuTime / 1e6) +
+				 " of processor time)") + ".");
 	return playerMove;
 
     }
 
-    /** Signals the parent <code>ClientThread</code> that the current
-     * {@link konaneCommon.ClientThread.PlayerThread} is done making a
-     * move.
-     */
-    private synchronized void wakeUp() {
-	notifyAll();
+    /** Converts nanoseconds to whole milliseconds. */
+    private static long millis(long nanos) {
+	return nanos / 1000000L;
     }
 
-    /** Inner class of <code>ClientThread</code> that runs a
-     * {@link konaneCommon.Player} in a separate thread of execution,
-     * times it, and signals its completion to the <code>ClientThread</code>
-     */
-    public class PlayerThread extends Thread {
-
-	private ClientThread parent;
-
-	public PlayerThread(ClientThread parent) {
-	    this.parent = parent;
+    /** Lets a {@link konaneCommon.PonderingPlayer} think about the board
+     * while the opponent moves. */
+    private void startPondering() {
+	if (worker != null) {
+	    worker.startPondering(boardGrid.copy());
 	}
+    }
 
-	public synchronized void run() {
+    /** Stops a {@link konaneCommon.PonderingPlayer} from pondering. */
+    private void stopPondering() {
+	if (player instanceof PonderingPlayer) {
 	    try {
-		timeBegan = System.currentTimeMillis();
-		playerMove = player.makeMove(boardGrid.copy(), timeLeft);
-		transitTime = System.currentTimeMillis() - timeBegan;
+		((PonderingPlayer)player).stopPondering();
 	    }
 	    catch (Exception e) {
 		System.err.println(e.toString());
-		playerMove = null;
 	    }
-	    moveFinished = true;
-	    parent.wakeUp();
 	}
+    }
 
+    /** Stops the current player from pondering and tells it that its
+     * game is over. */
+    private void endGame() {
+	if (player == null) {
+	    return;
+	}
+	stopPondering();
+	try {
+	    player.endGame();
+	}
+	catch (Exception e) {
+	    System.err.println(e.toString());
+	}
+	player = null;
+    }
+
+    /** Lets the thread of the current player's worker end. */
+    private void closeWorker() {
+	if (worker != null) {
+	    worker.close();
+	    worker = null;
+	}
     }
 
 }
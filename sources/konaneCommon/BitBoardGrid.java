@@ -0,0 +1,424 @@
+/* BitBoardGrid.java
+ * Konane Game System
+ * MIT IEEE IAP Programming Competition 2001
+ */
+
+package konaneCommon;
+
+/** A Konane gameboard backed by packed bitsets.
+
+ * <p>The <code>BitBoardGrid</code> behaves exactly like a
+ * {@link konaneCommon.BoardGrid} and can be passed anywhere a
+ * <code>BoardGrid</code> is expected. In addition to the
+ * {@link konaneCommon.BoardGrid#tokens} array it keeps one bitset per side,
+ * stored row by row with bit <code>col</code> of a row set when a token of
+ * that side occupies <code>(col, row)</code>. Rows wider than 64 columns
+ * span several <code>long</code> words, so every board size up to
+ * {@link konaneCommon.Konane#MAX_COL} by {@link konaneCommon.Konane#MAX_ROW}
+ * is supported.</p>
+
+ * <p>Move generation works on whole words at a time: a jump to the right
+ * lands on every empty square whose left neighbour is an opposing token
+ * and whose second left neighbour is a token of the moving side, which is
+ * a pair of shifts and two ANDs per word. Multiple jumps are found by
+ * repeating the step from the previous landing squares. Vertical jumps
+ * combine whole rows instead of shifting.</p>
+
+ * <p>The bitsets are updated by the methods of this class. Code that writes
+ * to <code>tokens</code> directly must call {@link #resync()} afterwards,
+ * as with any <code>BoardGrid</code>.</p>
+ */
+public class BitBoardGrid extends BoardGrid {
+
+    /** Number of <code>long</code> words used to store one row. */
+    protected int words;
+
+    /** Bitset of white tokens, <code>words</code> longs per row. */
+    protected long[] whiteBits;
+
+    /** Bitset of black tokens, <code>words</code> longs per row. */
+    protected long[] blackBits;
+
+    /** Mask of the bits of one row that lie within the board. */
+    protected long[] rowMask;
+
+    /** Scratch rows used during move generation. */
+    private long[] ownRow;
+    private long[] oppRow;
+    private long[] emptyRow;
+    private long[] target;
+    private long[] landing;
+    private long[] shifted;
+
+    /** Landing squares of vertical jumps, one row per board row. */
+    private long[] vertical;
+
+    /** Constructor that accepts the width and height of the board.
+     * The board is initialized as in
+     * {@link konaneCommon.BoardGrid#BoardGrid(int, int)}.
+     */
+    public BitBoardGrid(int width, int height) {
+	super(width, height);
+    }
+
+    /** Constructor that accepts an array of tokens to copy, along with the
+     * width and height of the board. If you need to clone a board, call
+     * {@link #copy()} instead.
+     */
+    public BitBoardGrid(byte[][] tokens, int width, int height) {
+	super(tokens, width, height);
+    }
+
+    /** Allocates the bitsets and scratch rows for the current dimensions. */
+    private void allocate() {
+	words = (width + 63) >>> 6;
+	whiteBits = new long[words * height];
+	blackBits = new long[words * height];
+	rowMask = new long[words];
+	for (int w = 0; w < words; w++) {
+	    int bits = width - (w << 6);
+	    rowMask[w] = (bits >= 64) ? -1L : ((1L << bits) - 1);
+	}
+	ownRow = new long[words];
+	oppRow = new long[words];
+	emptyRow = new long[words];
+	target = new long[words];
+	landing = new long[words];
+	shifted = new long[words];
+	vertical = new long[words * height];
+    }
+
+    /** Returns a new instance of the board with the same <code>width</code>,
+     * <code>height</code>, and <code>tokens</code> values.
+     */
+    public BoardGrid copy() {
+	return new BitBoardGrid(tokens, width, height);
+    }
+
+    /** Removes two tokens from the center of a gameboard at the
+     * beginning of a game.
+     * @see konaneCommon.BoardGrid#removeInitialTokens()
+     */
+    public int[] removeInitialTokens() {
+	int[] removed = super.removeInitialTokens();
+	setBit(removed[0], removed[1], Konane.NONE);
+	setBit(removed[0] + 1, removed[1], Konane.NONE);
+	return removed;
+    }
+
+    /** Rebuilds the bitsets and the hash from
+     * {@link konaneCommon.BoardGrid#tokens}. Call this after modifying
+     * <code>tokens</code> directly.
+     * <p>The superclass constructors call this method before the bitsets
+     * exist, so it also allocates them on first use.</p>
+     */
+    public void resync() {
+	super.resync();
+	if (whiteBits == null) {
+	    allocate();
+	}
+	for (int i = 0; i < whiteBits.length; i++) {
+	    whiteBits[i] = 0;
+	    blackBits[i] = 0;
+	}
+	for (int i = 0; i < width; i++) {
+	    for (int j = 0; j < height; j++) {
+		setBit(i, j, tokens[i][j]);
+	    }
+	}
+    }
+
+    /** Sets the bit for <code>(col, row)</code> in the bitset of
+     * <code>token</code> and clears it in the other one. */
+    private void setBit(int col, int row, byte token) {
+	int index = row * words + (col >>> 6);
+	long bit = 1L << col;
+	whiteBits[index] &= ~bit;
+	blackBits[index] &= ~bit;
+	if (token == Konane.WHITE) {
+	    whiteBits[index] |= bit;
+	}
+	else if (token == Konane.BLACK) {
+	    blackBits[index] |= bit;
+	}
+    }
+
+    /** Updates the bitsets along with the tokens for a move made on the
+     * board.
+     * @see konaneCommon.BoardGrid#applyMove(int)
+     */
+    protected void applyMove(int move) {
+	super.applyMove(move);
+	int col = MoveList.initialCol(move);
+	int row = MoveList.initialRow(move);
+	int finalCol = MoveList.finalCol(move);
+	int finalRow = MoveList.finalRow(move);
+	int dc = direction(col, finalCol);
+	int dr = direction(row, finalRow);
+	while (col != finalCol || row != finalRow) {
+	    setBit(col, row, Konane.NONE);
+	    col += dc;
+	    row += dr;
+	}
+	setBit(finalCol, finalRow, MoveList.side(move));
+    }
+
+    /** Updates the bitsets along with the tokens for a move taken back.
+     * @see konaneCommon.BoardGrid#revertMove(int)
+     */
+    protected void revertMove(int move) {
+	super.revertMove(move);
+	int col = MoveList.initialCol(move);
+	int row = MoveList.initialRow(move);
+	int finalCol = MoveList.finalCol(move);
+	int finalRow = MoveList.finalRow(move);
+	int dc = direction(col, finalCol);
+	int dr = direction(row, finalRow);
+	while (col != finalCol || row != finalRow) {
+	    setBit(col, row, tokens[col][row]);
+	    col += dc;
+	    row += dr;
+	}
+	setBit(finalCol, finalRow, Konane.NONE);
+    }
+
+    /** Appends all possible moves on the board for the given
+     * <code>side</code> to <code>moves</code> as packed moves. The moves are
+     * the same as those of
+     * {@link konaneCommon.BoardGrid#generateMoves(byte, konaneCommon.MoveList)},
+     * although not necessarily in the same order.
+     * @return the number of moves appended.
+     */
+    public int generateMoves(byte side, MoveList moves) {
+	return scan(side, moves);
+    }
+
+    /** Counts the possible moves on the board for the given
+     * <code>side</code> with population counts, without listing them.
+     * @see konaneCommon.BoardGrid#countMoves(byte)
+     */
+    public int countMoves(byte side) {
+	return scan(side, null);
+    }
+
+    /** Determines whether the given <code>side</code> has a legal move by
+     * looking for a single jump a word at a time.
+     * @see konaneCommon.BoardGrid#hasAnyMove(byte)
+     */
+    public boolean hasAnyMove(byte side) {
+	if (side != Konane.WHITE && side != Konane.BLACK) {
+	    return false;
+	}
+	long[] own = (side == Konane.WHITE) ? whiteBits : blackBits;
+	long[] opp = (side == Konane.WHITE) ? blackBits : whiteBits;
+	for (int row = 0; row < height; row++) {
+	    int base = row * words;
+	    for (int w = 0; w < words; w++) {
+		ownRow[w] = own[base + w];
+		oppRow[w] = opp[base + w];
+		emptyRow[w] = ~(own[base + w] | opp[base + w]) & rowMask[w];
+	    }
+	    shiftUp(oppRow, 1, target);
+	    shiftUp(ownRow, 2, landing);
+	    for (int w = 0; w < words; w++) {
+		if ((landing[w] & target[w] & emptyRow[w]) != 0) {
+		    return true;
+		}
+	    }
+	    shiftDown(oppRow, 1, target);
+	    shiftDown(ownRow, 2, landing);
+	    for (int w = 0; w < words; w++) {
+		if ((landing[w] & target[w] & emptyRow[w]) != 0) {
+		    return true;
+		}
+	    }
+	    for (int w = 0; w < words; w++) {
+		long vertical = 0;
+		if (row >= 2) {
+		    vertical |= own[base - 2 * words + w] &
+			opp[base - words + w];
+		}
+		if (row + 2 < height) {
+		    vertical |= own[base + 2 * words + w] &
+			opp[base + words + w];
+		}
+		if ((vertical & emptyRow[w]) != 0) {
+		    return true;
+		}
+	    }
+	}
+	return false;
+    }
+
+    /** Finds the moves for <code>side</code>, appending them to
+     * <code>moves</code> if it is not null.
+     * @return the number of moves found.
+     */
+    private int scan(byte side, MoveList moves) {
+	if (side != Konane.WHITE && side != Konane.BLACK) {
+	    return 0;
+	}
+	int count = 0;
+	long[] own = (side == Konane.WHITE) ? whiteBits : blackBits;
+	long[] opp = (side == Konane.WHITE) ? blackBits : whiteBits;
+
+	for (int row = 0; row < height; row++) {
+	    int base = row * words;
+	    for (int w = 0; w < words; w++) {
+		ownRow[w] = own[base + w];
+		oppRow[w] = opp[base + w];
+		emptyRow[w] = ~(own[base + w] | opp[base + w]) & rowMask[w];
+	    }
+
+	    // "Right" moves: land on an empty square with an opposing token
+	    // on its left and the jumping token, or a previous landing square,
+	    // two to its left.
+	    shiftUp(oppRow, 1, target);
+	    and(target, emptyRow, target);
+	    shiftUp(ownRow, 2, landing);
+	    and(landing, target, landing);
+	    for (int step = 2; !isZero(landing); step += 2) {
+		count += addRowMoves(moves, landing, row, -step, side);
+		shiftUp(landing, 2, shifted);
+		and(shifted, target, landing);
+	    }
+
+	    // "Left" moves, mirrored.
+	    shiftDown(oppRow, 1, target);
+	    and(target, emptyRow, target);
+	    shiftDown(ownRow, 2, landing);
+	    and(landing, target, landing);
+	    for (int step = 2; !isZero(landing); step += 2) {
+		count += addRowMoves(moves, landing, row, step, side);
+		shiftDown(landing, 2, shifted);
+		and(shifted, target, landing);
+	    }
+	}
+
+	// "Down" moves, in the direction of increasing row numbers.
+	count += addColumnMoves(moves, own, opp, 1, side);
+	// "Up" moves, in the direction of decreasing row numbers.
+	count += addColumnMoves(moves, own, opp, -1, side);
+
+	return count;
+    }
+
+    /** Adds the vertical jumps in direction <code>dr</code> to
+     * <code>moves</code>, or only counts them if <code>moves</code> is null.
+     * Each row of {@link #vertical} holds the squares reached after the
+     * current number of jumps.
+     * @return the number of moves found.
+     */
+    private int addColumnMoves(MoveList moves, long[] own, long[] opp,
+			       int dr, byte side) {
+	int count = 0;
+	for (int i = 0; i < vertical.length; i++) {
+	    vertical[i] = own[i];
+	}
+	for (int step = 2; step < height; step += 2) {
+	    boolean found = false;
+	    // Walk against the jump direction so that the source rows are
+	    // read before they are overwritten.
+	    for (int n = height - 1; n >= 0; n--) {
+		int row = (dr > 0) ? n : height - 1 - n;
+		int base = row * words;
+		int jumped = row - dr;
+		int from = row - 2 * dr;
+		if (jumped < 0 || jumped >= height ||
+		    from < 0 || from >= height) {
+		    for (int w = 0; w < words; w++) {
+			vertical[base + w] = 0;
+		    }
+		    continue;
+		}
+		for (int w = 0; w < words; w++) {
+		    long bits = vertical[from * words + w] &
+			opp[jumped * words + w] &
+			~(own[base + w] | opp[base + w]) & rowMask[w];
+		    vertical[base + w] = bits;
+		    if (bits != 0) {
+			found = true;
+		    }
+		}
+	    }
+	    if (!found) {
+		break;
+	    }
+	    for (int row = 0; row < height; row++) {
+		for (int w = 0; w < words; w++) {
+		    long bits = vertical[row * words + w];
+		    count += Long.bitCount(bits);
+		    if (moves == null) {
+			continue;
+		    }
+		    while (bits != 0) {
+			int col = (w << 6) + Long.numberOfTrailingZeros(bits);
+			bits &= bits - 1;
+			moves.add(MoveList.pack(col, row - step * dr,
+						col, row, side));
+		    }
+		}
+	    }
+	}
+	return count;
+    }
+
+    /** Adds a move for every bit of <code>landing</code>, jumping from
+     * <code>offset</code> columns away to the landing square, or only
+     * counts them if <code>moves</code> is null.
+     * @return the number of moves found.
+     */
+    private int addRowMoves(MoveList moves, long[] landing, int row,
+			    int offset, byte side) {
+	int count = 0;
+	for (int w = 0; w < words; w++) {
+	    long bits = landing[w];
+	    count += Long.bitCount(bits);
+	    if (moves == null) {
+		continue;
+	    }
+	    while (bits != 0) {
+		int col = (w << 6) + Long.numberOfTrailingZeros(bits);
+		bits &= bits - 1;
+		moves.add(MoveList.pack(col + offset, row, col, row, side));
+	    }
+	}
+	return count;
+    }
+
+    /** Shifts a row towards higher column numbers by <code>n</code> bits,
+     * where <code>0 &lt; n &lt; 64</code>. */
+    private void shiftUp(long[] src, int n, long[] dst) {
+	for (int w = words - 1; w > 0; w--) {
+	    dst[w] = ((src[w] << n) | (src[w - 1] >>> (64 - n))) & rowMask[w];
+	}
+	dst[0] = (src[0] << n) & rowMask[0];
+    }
+
+    /** Shifts a row towards lower column numbers by <code>n</code> bits,
+     * where <code>0 &lt; n &lt; 64</code>. */
+    private void shiftDown(long[] src, int n, long[] dst) {
+	for (int w = 0; w < words - 1; w++) {
+	    dst[w] = (src[w] >>> n) | (src[w + 1] << (64 - n));
+	}
+	dst[words - 1] = src[words - 1] >>> n;
+    }
+
+    /** Stores the bitwise AND of two rows in <code>dst</code>. */
+    private void and(long[] a, long[] b, long[] dst) {
+	for (int w = 0; w < words; w++) {
+	    dst[w] = a[w] & b[w];
+	}
+    }
+
+    /** Determines whether a row has no bits set. */
+    private boolean isZero(long[] bits) {
+	for (int w = 0; w < words; w++) {
+	    if (bits[w] != 0) {
+		return false;
+	    }
+	}
+	return true;
+    }
+
+}
@@ -19,16 +19,78 @@ import java.util.Vector;
  * moves. Sides are defined as byte constants in
  * {@link konaneCommon.Konane}.</p>
 
+ * <p>The tokens are stored in a single array, {@link #cells}, one row
+ * after another, with a border of {@link konaneCommon.Konane#ERROR} cells
+ * around the board. A scan along a line of jumps therefore stops at the
+ * edge of the board by itself, without checking the position against the
+ * board's dimensions, and a scan along a row reads consecutive bytes. The
+ * two-dimensional {@link #tokens} array is kept as a copy of the same
+ * tokens for code that reads it directly.</p>
+
  * @author Paul Pham
  * @version 1.16, 17 January 2001
  */
 public class BoardGrid {
 
     /** Two-dimensional array of bytes representing tokens on a Konane
-     * gameboard.
+     * gameboard, indexed by column and then row.
+     * <p>This array is kept for compatibility with code that reads the
+     * tokens directly; the methods of this class use {@link #cells}. Code
+     * that changes the array must call {@link #resync()} afterwards.</p>
      */
     public byte[][] tokens;
 
+    /** The tokens of the board, row after row, surrounded by a border one
+     * cell wide of {@link konaneCommon.Konane#ERROR} values. The token at
+     * <code>(col, row)</code> is at {@link #index(int, int)}, and its
+     * neighbours are <code>1</code> and {@link #stride} cells away.
+     */
+    protected byte[] cells;
+
+    /** The distance in {@link #cells} between vertically adjacent
+     * positions: the width of the board plus the two border cells. */
+    protected int stride;
+
+    /** The positions in {@link #cells} of the empty squares, in the first
+     * {@link #emptyCount} entries. A move always lands on an empty square,
+     * so moves are generated outward from these positions, at a cost that
+     * grows with the number of empty squares rather than with the size of
+     * the board. */
+    private int[] empties;
+
+    /** The number of empty squares. */
+    private int emptyCount;
+
+    /** The index in {@link #empties} of each empty position of
+     * {@link #cells}. */
+    private int[] emptySlots;
+
+    /** Occupancy masks of the rows, four words per row: two words with a
+     * bit set for each column holding a white token, then two for black.
+     * Used by {@link #isLegalMove(int, int, int, int, byte)}. */
+    private long[] rowTokens;
+
+    /** Occupancy masks of the columns, laid out like {@link #rowTokens}
+     * with a bit for each row. */
+    private long[] columnTokens;
+
+    /** Scratch space for {@link #symmetryHashes(byte, long[])}, allocated
+     * the first time the board is canonicalized. */
+    private long[] symmetryHashes;
+
+    /** The canonical hash and transform found by
+     * {@link #canonicalize(byte)}, and {@link #getHash(byte)} of the
+     * position they belong to, valid if {@link #canonicalKnown} is set. */
+    private boolean canonicalKnown;
+    private long canonicalKey;
+    private long canonicalHash;
+    private int canonicalTransform;
+
+    /** Masks of the even and of the odd bit positions. */
+    private final static long[] ALTERNATE = {
+	0x5555555555555555L, 0xAAAAAAAAAAAAAAAAL
+    };
+
     /** The width of the gameboard in columns.
      * This number must be less than or equals to
      * {@link konaneCommon.Konane#MAX_COL}.
@@ -41,6 +103,19 @@ public class BoardGrid {
      */
     protected int height;
 
+    /** Flag combined with a geometric transform to also exchange white and
+     * black tokens. Exchanging the colours and the side to move gives a
+     * position that plays exactly like the original, so every board has
+     * twice as many symmetries as {@link #getSymmetryCount()}.
+     */
+    public final static int SWAP_COLOURS = 8;
+
+    /** Zobrist hash of the tokens and dimensions of the board, kept up to
+     * date by every method that changes the board.
+     * @see konaneCommon.Zobrist
+     */
+    protected long hash;
+
     /** Empty default constructor. Frees subclass constructors from calling
      * the super method.
      */
@@ -79,6 +154,7 @@ public class BoardGrid {
 	    this.tokens[i][j] = tokens[i][j];
 	  }
 	}
+	resync();
     }
 
     /** Returns a new instance of the board with the same <code>width</code>,
@@ -105,6 +181,88 @@ public class BoardGrid {
 		}
 	    }
 	}
+	resync();
+    }
+
+    /** Recomputes all state derived from {@link #tokens}, such as the
+     * hash returned by {@link #getHash()}.
+     * <p>Every method of this class keeps that state up to date, so this
+     * method only needs to be called after modifying <code>tokens</code>
+     * directly. Subclasses that keep additional state should override this
+     * method and call the superclass version.</p>
+     */
+    public void resync() {
+	stride = width + 2;
+	if (cells == null || cells.length != stride * (height + 2)) {
+	    cells = new byte[stride * (height + 2)];
+	}
+	rowTokens = new long[height << 2];
+	columnTokens = new long[width << 2];
+	empties = new int[width * height];
+	emptySlots = new int[cells.length];
+	emptyCount = 0;
+	for (int i = 0; i < width; i++) {
+	    byte[] column = tokens[i];
+	    for (int j = 0, p = index(i, 0); j < height; j++, p += stride) {
+		cells[p] = column[j];
+		flip(column[j], i, j);
+	    }
+	}
+	// Listed in a second pass so that the empty squares are in the
+	// order of the rows, the same whichever way the board was built.
+	for (int p = index(0, 0), end = index(0, height); p < end; p++) {
+	    if (cells[p] == Konane.NONE) {
+		emptySlots[p] = emptyCount;
+		empties[emptyCount++] = p;
+	    }
+	}
+	hash = Zobrist.hash(this);
+    }
+
+    /** Sets the token at <code>(col, row)</code>, whose position in
+     * {@link #cells} is <code>p</code>, in every representation of the
+     * board, and updates the hash. */
+    private void put(int col, int row, int p, byte token) {
+	byte old = cells[p];
+	hash ^= Zobrist.key(old, col, row) ^ Zobrist.key(token, col, row);
+	flip(old, col, row);
+	flip(token, col, row);
+	if (old == Konane.NONE && token != Konane.NONE) {
+	    // Moves the last empty square into the slot being vacated.
+	    int slot = emptySlots[p];
+	    int last = empties[--emptyCount];
+	    empties[slot] = last;
+	    emptySlots[last] = slot;
+	}
+	else if (old != Konane.NONE && token == Konane.NONE) {
+	    emptySlots[p] = emptyCount;
+	    empties[emptyCount++] = p;
+	}
+	tokens[col][row] = token;
+	cells[p] = token;
+    }
+
+    /** Toggles the bits of a token in {@link #rowTokens} and
+     * {@link #columnTokens}. Does nothing for an empty position. */
+    private void flip(byte token, int col, int row) {
+	int colour;
+	if (token == Konane.WHITE) {
+	    colour = 0;
+	}
+	else if (token == Konane.BLACK) {
+	    colour = 2;
+	}
+	else {
+	    return;
+	}
+	rowTokens[(row << 2) + colour + (col >>> 6)] ^= 1L << col;
+	columnTokens[(col << 2) + colour + (row >>> 6)] ^= 1L << row;
+    }
+
+    /** Returns the position of <code>(col, row)</code> in {@link #cells}.
+     */
+    protected final int index(int col, int row) {
+	return (row + 1) * stride + col + 1;
     }
 
     /** Removes two tokens from the center of a gameboard at the
@@ -121,11 +279,31 @@ public class BoardGrid {
     public int[] removeInitialTokens() {
 	int col = (width - 1) / 2;
 	int row = (height - 1) / 2;
-	tokens[col][row] = Konane.NONE;
-	tokens[col + 1][row] = Konane.NONE;
+	put(col, row, index(col, row), Konane.NONE);
+	put(col + 1, row, index(col + 1, row), Konane.NONE);
 	return (new int[] { col, row });
     }
 
+    /** Returns the Zobrist hash of the board.
+     * <p>The hash depends only on the board's dimensions and tokens, so two
+     * boards with the same position have the same hash, whatever moves led
+     * to it. It is updated incrementally as moves are made and unmade, by
+     * combining only the keys of the squares a move changes, and is
+     * therefore cheap enough to read at every node of a search.</p>
+     * @see konaneCommon.Zobrist
+     */
+    public long getHash() {
+	return hash;
+    }
+
+    /** Returns the Zobrist hash of the board combined with the side to move,
+     * for use as the key of a position in a search.
+     * @param side the side to move.
+     */
+    public long getHash(byte side) {
+	return (side == Konane.BLACK) ? (hash ^ Zobrist.BLACK_TO_MOVE) : hash;
+    }
+
     /** Returns the width of the board (the number of columns).
      */
     public int getWidth() {
@@ -151,7 +329,7 @@ public class BoardGrid {
       */
     public byte getTokenAt(int col, int row) {
 	if (isValidPosition(col, row)) {
-	    return tokens[col][row];
+	    return cells[index(col, row)];
 	}
 	else
 	    return Konane.ERROR;
@@ -182,6 +360,10 @@ public class BoardGrid {
 
     /** Determines whether the move from the given initial position to the
      * final position for the given side on this board is valid.
+     * <p>The move is checked by {@link #isLegalMove(int, int, int, int,
+     * byte)}. Only if it is invalid, and {@link konaneCommon.Konane#verbose}
+     * is set, is the reason found with
+     * {@link #getMoveError(int, int, int, int, byte)} and printed.</p>
      * @param initialCol column number of the initial position, numbered from 0.
      * @param initialRow row number of the initial position, numbered from 0.
      * @param finalCol column number of the final position, numbered from 0.
@@ -190,78 +372,149 @@ public class BoardGrid {
      */
     public boolean isValidMove(int initialCol, int initialRow,
 			       int finalCol, int finalRow, byte side) {
+	if (isLegalMove(initialCol, initialRow, finalCol, finalRow, side)) {
+	    return true;
+	}
+	if (Konane.verbose) {
+	    System.err.println(getMoveError(initialCol, initialRow,
+					    finalCol, finalRow, side));
+	}
+	return false;
+    }
+
+    /** Determines, without printing anything, whether the move from the
+     * given initial position to the final position for the given side on
+     * this board is valid.
+     * <p>The squares along a jump are tested all at once against
+     * {@link #rowTokens} or {@link #columnTokens}: a mask of the jumped
+     * squares, which must all hold opposing tokens, and a mask of the
+     * squares landed on, which must all be empty, are made from a parity
+     * pattern in {@link #ALTERNATE} cut down to the length of the jump.
+     * The answer therefore takes the same few word operations however long
+     * the jump is.</p>
+     * @return true if a valid move can be made from the initial position
+     * to the final position for the given <code>side</code>.
+     */
+    public boolean isLegalMove(int initialCol, int initialRow,
+			       int finalCol, int finalRow, byte side) {
+	if ((side != Konane.WHITE && side != Konane.BLACK) ||
+	    !isValidPosition(initialCol, initialRow) ||
+	    !isValidPosition(finalCol, finalRow) ||
+	    cells[index(initialCol, initialRow)] != side) {
+	    return false;
+	}
+	long[] lines;
+	int line, from, to;
+	if (initialRow == finalRow) {
+	    lines = rowTokens;
+	    line = initialRow;
+	    from = initialCol;
+	    to = finalCol;
+	}
+	else if (initialCol == finalCol) {
+	    lines = columnTokens;
+	    line = initialCol;
+	    from = initialRow;
+	    to = finalRow;
+	}
+	else {
+	    return false;
+	}
+	if (from == to || ((from ^ to) & 1) != 0) {
+	    return false;
+	}
+	// The squares between the two ends, excluding the initial square,
+	// alternate between jumped and landed on, the first being jumped.
+	int low = (from < to) ? from + 1 : to;
+	int high = (from < to) ? to : from - 1;
+	long jumped = ALTERNATE[(from + 1) & 1];
+	long landed = ALTERNATE[from & 1];
+	int base = line << 2;
+	int opponent = base + ((side == Konane.WHITE) ? 2 : 0);
+	for (int w = 0; w < 2; w++) {
+	    long span = span(w, low, high);
+	    long occupied = lines[base + w] | lines[base + 2 + w];
+	    if ((lines[opponent + w] & jumped & span) != (jumped & span) ||
+		(occupied & landed & span) != 0) {
+		return false;
+	    }
+	}
+	return true;
+    }
+
+    /** Returns the bits of word <code>w</code> of a line mask that lie
+     * between positions <code>low</code> and <code>high</code> inclusive.
+     */
+    private static long span(int w, int low, int high) {
+	low -= w << 6;
+	high -= w << 6;
+	if (high < 0 || low > 63) {
+	    return 0;
+	}
+	return (-1L << Math.max(low, 0)) & (-1L >>> (63 - Math.min(high, 63)));
+    }
+
+    /** Explains why the move from the given initial position to the final
+     * position for the given side on this board is invalid.
+     * <p>This method makes the same checks as
+     * {@link #isLegalMove(int, int, int, int, byte)} one square at a time
+     * and builds a message for the first that fails, so it should only be
+     * called once a move is known to be invalid.</p>
+     * @return a description of the error, or null if the move is valid.
+     */
+    public String getMoveError(int initialCol, int initialRow,
+			       int finalCol, int finalRow, byte side) {
 	byte initialToken = getTokenAt(initialCol, initialRow);
 	byte finalToken = getTokenAt(finalCol, finalRow);
 
 	// Checks if side is valid.
 	if (!isValidSide(side)) {
-	    if (Konane.verbose) {
-		System.err.println("BoardGrid::isValidMove()--" +
-				   Konane.sideToString(side) +
-				   " not a valid side.");
-	    }
-	    return false;
+	    return "BoardGrid::isValidMove()--" +
+		Konane.sideToString(side) +
+		" not a valid side.";
 	}
 
 	// Checks if initial position is valid.
 	if (!isValidPosition(initialCol, initialRow)) {
-	    if (Konane.verbose) {
-		System.err.println("BoardGrid::isValidMove()--" +
-				   "error at (" + initialCol + "," +
-				   initialRow + ")--not valid position.");
-	    }
-	    return false;
+	    return "BoardGrid::isValidMove()--" +
+		"error at (" + initialCol + "," +
+		initialRow + ")--not valid position.";
 	}
 
 	// Checks if final position is valid.
 	if (!isValidPosition(finalCol, finalRow)) {
-	    if (Konane.verbose) {
-		System.err.println("BoardGrid::isValidMove()--" +
-				   "error at (" + finalCol + "," +
-				   finalRow + ")--not valid position.");
-	    }
-	    return false;
+	    return "BoardGrid::isValidMove()--" +
+		"error at (" + finalCol + "," +
+		finalRow + ")--not valid position.";
 	}
 
 	// Checks if initial position and final position are the same.
 	if (initialCol == finalCol && initialRow == finalRow) {
-	    if (Konane.verbose) {
-		System.err.println("BoardGrid::isValidMove()--" +
-				   "same initial and final token.");
-	    }
-	    return false;
+	    return "BoardGrid::isValidMove()--" +
+		"same initial and final token.";
 	}
 
 	// Checks if move is in a straight-line.
 	if (initialCol != finalCol && initialRow != finalRow) {
-	    if (Konane.verbose) {
-		System.err.println("BoardGrid::isValidMove()--" +
-				   "not a straight-line move.");
-	    }
-	    return false;
+	    return "BoardGrid::isValidMove()--" +
+		"not a straight-line move.";
 	}
 
 	// Checks if token at initialPosition is of the correct side.
 	if (initialToken != side) {
-	    if (Konane.verbose) {
-		System.err.println("BoardGrid::isValidMove()--" +
-				   "error at (" + initialCol + "," +
-				   initialRow + ")--initial token is " +
-				   Konane.sideToString(initialToken) +
-				   ", expected " +
-				   Konane.sideToString((byte)side));
-	    }
-	    return false;
+	    return "BoardGrid::isValidMove()--" +
+		"error at (" + initialCol + "," +
+		initialRow + ")--initial token is " +
+		Konane.sideToString(initialToken) +
+		", expected " +
+		Konane.sideToString((byte)side);
 	}
 
 	// Checks if final token is empty.
 	if (finalToken != Konane.NONE) {
-	    if (Konane.verbose) {
-		System.err.println("BoardGrid::isValidMove()--" +
-				   "error at (" + finalCol + "," +
-				   finalRow + ")--final token is not empty.");
-	    }
-	    return false;
+	    return "BoardGrid::isValidMove()--" +
+		"error at (" + finalCol + "," +
+		finalRow + ")--final token is not empty.";
 	}
 
 	// Vertical move
@@ -278,30 +531,24 @@ public class BoardGrid {
 			byte landedToken = getTokenAt(initialCol, i + 1);
 
 			if (jumpedToken != ~side) {
-			    if (Konane.verbose) {
-				System.err.println("BoardGrid::isValidMove()" +
+			    return "BoardGrid::isValidMove()" +
 				"--error at (" + initialCol + "," + i +
 				")--jumped position is " +
 				Konane.sideToString(jumpedToken) +
 				", expected " +
-				Konane.sideToString((byte)~side));
-			    }
-			    return false;
+				Konane.sideToString((byte)~side);
 			}
 
 			if (landedToken != Konane.NONE) {
-			    if (Konane.verbose) {
-				System.err.println("BoardGrid::isValidMove()" +
+			    return "BoardGrid::isValidMove()" +
 				"--error at (" + initialCol + "," + i +
 				")--jumped position is " +
 				Konane.sideToString(jumpedToken) +
-				", expected NONE.");
-			    }
-			    return false;
+				", expected NONE.";
 			}
 
 		    }
-		    return true;
+		    return null;
 		}
 
 		// "Up" move, in the direction of decreasing row numbers.
@@ -313,41 +560,32 @@ public class BoardGrid {
 			byte landedToken = getTokenAt(initialCol, i - 1);
 
 			if (jumpedToken != ~side) {
-			    if (Konane.verbose) {
-				System.err.println("BoardGrid::isValidMove()" +
+			    return "BoardGrid::isValidMove()" +
 				"--error at (" + initialCol + "," + i +
 				")--jumped position is " +
 				Konane.sideToString(jumpedToken) +
 				", expected " +
-				Konane.sideToString((byte)~side));
-			    }
-			    return false;
+				Konane.sideToString((byte)~side);
 			}
 
 			if (landedToken != Konane.NONE) {
-			    if (Konane.verbose) {
-				System.err.println("BoardGrid::isValidMove()" +
+			    return "BoardGrid::isValidMove()" +
 				"--error at (" + initialCol + "," + i +
 				")--jumped position is " +
 				Konane.sideToString(jumpedToken) +
-				", expected NONE.");
-			    }
-			    return false;
+				", expected NONE.";
 			}
 
 		    }
-		    return true;
+		    return null;
 		}
 	    }
 	    // Else move does not change position by an even number of spaces.
 	    else {
-		if (Konane.verbose) {
-		    System.err.println("BoardGrid::isValidMove()==" +
-				       "error at (" + initialCol + "," +
-				       initialRow + ")--vertical jump does " +
-				       "not cover an even number of spaces.");
-		}
-		return false;
+		return "BoardGrid::isValidMove()==" +
+		    "error at (" + initialCol + "," +
+		    initialRow + ")--vertical jump does " +
+		    "not cover an even number of spaces.";
 	    }
 	}
 	// Else horizontal move
@@ -363,30 +601,24 @@ public class BoardGrid {
 			byte landedToken = getTokenAt(i + 1, initialRow);
 
 			if (jumpedToken != ~side) {
-			    if (Konane.verbose) {
-				System.err.println("BoardGrid::isValidMove()" +
+			    return "BoardGrid::isValidMove()" +
 				"--error at (" + i + "," + initialRow +
 				")--jumped position is " +
 				Konane.sideToString(jumpedToken) +
 				", expected " +
-				Konane.sideToString((byte)~side));
-			    }
-			    return false;
+				Konane.sideToString((byte)~side);
 			}
 
 			if (landedToken != Konane.NONE) {
-			    if (Konane.verbose) {
-				System.err.println("BoardGrid::isValidMove()" +
+			    return "BoardGrid::isValidMove()" +
 				"--error at (" + i + "," + initialRow +
 				")--jumped position is " +
 				Konane.sideToString(jumpedToken) +
-				", expected NONE.");
-			    }
-			    return false;
+				", expected NONE.";
 			}
 
 		    }
-		    return true;
+		    return null;
 		}
 		// "Left" move, in the direction of decreasing column numbers
 		else { 
@@ -398,44 +630,35 @@ public class BoardGrid {
 
 			if (jumpedToken != ~side) {
 
-			    if (Konane.verbose) {
-				System.err.println("BoardGrid::isValidMove()" +
+			    return "BoardGrid::isValidMove()" +
 				"--error at (" + initialCol + "," + i +
 				")--jumped position is " +
 				Konane.sideToString(jumpedToken) +
 				", expected " +
-				Konane.sideToString((byte)~side));
-			    }
-			    return false;
+				Konane.sideToString((byte)~side);
 			}
 
 			if (landedToken != Konane.NONE) {
-			    if (Konane.verbose) {
-				System.err.println("BoardGrid::isValidMove()" +
+			    return "BoardGrid::isValidMove()" +
 				"--error at (" + i + initialRow +
 				")--jumped position is " +
 				Konane.sideToString(jumpedToken) +
-				", expected NONE.");
-			    }
-			    return false;
+				", expected NONE.";
 			}
 
 		    }
-		    return true;
+		    return null;
 		}
 	    }
 	    // Else move does not change position by an even number of spaces
 	    else {
-		if (Konane.verbose) {
-		    System.err.println("BoardGrid::isValidMove()==" +
+		return "BoardGrid::isValidMove()==" +
 		    "error at (" + initialCol + "," +
 		    initialRow + ")--horizontal jump" +
-		    "doesn't cover an even number of spaces.");
-		}
-		return false;
+		    "doesn't cover an even number of spaces.";
 	    }
 	}
-    }	    
+    }
 
     /** Determines whether the move from the given initial position to the
      * final position for the given side on this board is valid.
@@ -519,8 +742,9 @@ public class BoardGrid {
 	for (int i = initialRow + 1; i < (height - 1); i += 2) {
 	    if ((getTokenAt(initialCol, i) == ~side) &&
 		(getTokenAt(initialCol, i + 1) == Konane.NONE)) {
-		Move newMove = new Move(initialCol, initialRow,
-					initialCol, i + 1, side, "");
+		Move newMove = Move.of(width, height,
+				       initialCol, initialRow,
+				       initialCol, i + 1, side);
 		moves.addElement(newMove);
 	    }
 	    else {
@@ -531,8 +755,9 @@ public class BoardGrid {
 	for (int i = initialRow - 1; i > 0; i -= 2) {
 	    if ((getTokenAt(initialCol, i) == ~side) &&
 		(getTokenAt(initialCol, i - 1) == Konane.NONE)) {
-		Move newMove = new Move(initialCol, initialRow,
-					initialCol, i - 1, side, "");
+		Move newMove = Move.of(width, height,
+				       initialCol, initialRow,
+				       initialCol, i - 1, side);
 		moves.addElement(newMove);
 	    }
 	    else {
@@ -544,8 +769,9 @@ public class BoardGrid {
 	for (int i = initialCol + 1; i < (width - 1); i += 2) {
 	    if ((getTokenAt(i, initialRow) == ~side) &&
 		(getTokenAt(i + 1, initialRow) == Konane.NONE)) {
-		Move newMove = new Move(initialCol, initialRow,
-					i + 1, initialRow, side, "");
+		Move newMove = Move.of(width, height,
+				       initialCol, initialRow,
+				       i + 1, initialRow, side);
 		moves.addElement(newMove);
 	    }
 	    else {
@@ -557,8 +783,9 @@ public class BoardGrid {
 	for (int i = initialCol - 1; i > 0; i -= 2) {
 	    if ((getTokenAt(i, initialRow) == ~side) &&
 		(getTokenAt(i - 1, initialRow) == Konane.NONE)) {
-		Move newMove = new Move(initialCol, initialRow,
-					i - 1, initialRow, side, "");
+		Move newMove = Move.of(width, height,
+				       initialCol, initialRow,
+				       i - 1, initialRow, side);
 		moves.addElement(newMove);
 	    }
 	    else {
@@ -570,21 +797,149 @@ public class BoardGrid {
     }
 
     /** Returns a vector of all possible moves on the board for the given
-     * <code>side</code>. */
+     * <code>side</code>.
+     * <p>The moves are produced by
+     * {@link #generateMoves(byte, konaneCommon.MoveList)} and converted
+     * to the shared {@link konaneCommon.Move}s of the board's size, see
+     * {@link konaneCommon.Move#of(int, int, int, int, int, int, byte)}.</p>
+     */
     public Vector getAllMoves(byte side) {
-	Vector moves = new Vector();
-	for (int i = 0; i < width; i++) {
-	    for (int j = 0; j < height; j++) {
-		byte token = tokens[i][j];
-		if (token == side) {
-		    Vector tempMoves = getMoves(i, j, side);
-		    for (int k = 0; k < tempMoves.size(); k++) {
-			moves.addElement(tempMoves.elementAt(k));
-		    }
+	MoveList list = new MoveList();
+	generateMoves(side, list);
+	MoveTable table = MoveTable.forBoard(width, height);
+	Vector moves = new Vector(list.size());
+	for (int i = 0; i < list.size(); i++) {
+	    moves.addElement(table.get(list.get(i)));
+	}
+	return moves;
+    }
+
+    /** Appends all possible moves on the board for the given
+     * <code>side</code> to <code>out</code> as packed moves.
+     * <p>Unlike {@link #getAllMoves(byte)}, this method allocates nothing
+     * unless <code>out</code> has to grow, so a search can reuse one
+     * {@link konaneCommon.MoveList} per depth. Moves are found by working
+     * back from each empty square to the tokens that can land on it, so
+     * the cost depends on the number of empty squares, not the size of the
+     * board. They are listed by final position, in an order that depends
+     * on the order in which the squares were emptied, and for each final
+     * position in the order down, up, right, left.</p>
+     * @param side the side to move, {@link konaneCommon.Konane#WHITE} or
+     * {@link konaneCommon.Konane#BLACK}.
+     * @param out the list to append the moves to. It is not cleared first.
+     * @return the number of moves appended.
+     */
+    public int generateMoves(byte side, MoveList out) {
+	if (side != Konane.WHITE && side != Konane.BLACK) {
+	    return 0;
+	}
+	byte opponent = (byte)~side;
+	int count = out.size();
+	for (int e = 0; e < emptyCount; e++) {
+	    int p = empties[e];
+	    int col = p % stride - 1;
+	    int row = p / stride - 1;
+	    // "Down" moves, in the direction of increasing row numbers.
+	    addJumps(out, p, col, row, 0, 1, side, opponent);
+	    // "Up" moves, in the direction of decreasing row numbers.
+	    addJumps(out, p, col, row, 0, -1, side, opponent);
+	    // "Right" moves, in the direction of increasing column numbers.
+	    addJumps(out, p, col, row, 1, 0, side, opponent);
+	    // "Left" moves, in the direction of decreasing column numbers.
+	    addJumps(out, p, col, row, -1, 0, side, opponent);
+	}
+	return out.size() - count;
+    }
+
+    /** Adds to <code>out</code>, or only counts if <code>out</code> is
+     * null, the moves in direction <code>(dc, dr)</code> that land on the
+     * empty square <code>(col, row)</code> at position <code>p</code> of
+     * {@link #cells}.
+     * <p>Walks back from the landing square over alternating opposing
+     * tokens and empty squares. The first token of the moving side found
+     * where an empty square would come next can make the jump; the walk
+     * ends there, since a longer jump would have to land on that token.
+     * The border cells end the walk at the edge of the board.</p>
+     * @return the number of moves found.
+     */
+    private int addJumps(MoveList out, int p, int col, int row,
+			 int dc, int dr, byte side, byte opponent) {
+	int step = dr * stride + dc;
+	for (int q = p - step, k = 2; cells[q] == opponent;
+	     q -= 2 * step, k += 2) {
+	    byte token = cells[q - step];
+	    if (token == side) {
+		if (out != null) {
+		    out.add(MoveList.pack(col - k * dc, row - k * dr,
+					  col, row, side));
 		}
+		return 1;
+	    }
+	    if (token != Konane.NONE) {
+		break;
 	    }
 	}
-	return moves;
+	return 0;
+    }
+
+    /** Determines whether the given <code>side</code> has any legal move.
+     * <p>Returns as soon as one is found and allocates nothing, so it is the
+     * cheap way to decide whether the game is over. Every multiple jump
+     * begins with a single jump, so only single jumps onto each empty
+     * square are looked for.</p>
+     * @param side the side to move, {@link konaneCommon.Konane#WHITE} or
+     * {@link konaneCommon.Konane#BLACK}.
+     * @return true if <code>side</code> can move, false otherwise.
+     */
+    public boolean hasAnyMove(byte side) {
+	if (side != Konane.WHITE && side != Konane.BLACK) {
+	    return false;
+	}
+	byte opponent = (byte)~side;
+	byte[] cells = this.cells;
+	int stride = this.stride;
+	for (int e = 0; e < emptyCount; e++) {
+	    int p = empties[e];
+	    if (((cells[p - stride] == opponent) &&
+		 (cells[p - 2 * stride] == side)) ||
+		((cells[p + stride] == opponent) &&
+		 (cells[p + 2 * stride] == side)) ||
+		((cells[p - 1] == opponent) && (cells[p - 2] == side)) ||
+		((cells[p + 1] == opponent) && (cells[p + 2] == side))) {
+		return true;
+	    }
+	}
+	return false;
+    }
+
+    /** Returns the number of possible moves on the board for the given
+     * <code>side</code>, the same as the size of
+     * {@link #getAllMoves(byte)}, without allocating anything. Useful
+     * for mobility evaluation.
+     * @param side the side to move, {@link konaneCommon.Konane#WHITE} or
+     * {@link konaneCommon.Konane#BLACK}.
+     */
+    public int countMoves(byte side) {
+	if (side != Konane.WHITE && side != Konane.BLACK) {
+	    return 0;
+	}
+	byte opponent = (byte)~side;
+	int count = 0;
+	for (int e = 0; e < emptyCount; e++) {
+	    int p = empties[e];
+	    int col = p % stride - 1;
+	    int row = p / stride - 1;
+	    count += addJumps(null, p, col, row, 0, 1, side, opponent) +
+		addJumps(null, p, col, row, 0, -1, side, opponent) +
+		addJumps(null, p, col, row, 1, 0, side, opponent) +
+		addJumps(null, p, col, row, -1, 0, side, opponent);
+	}
+	return count;
+    }
+
+    /** Returns the number of empty squares on the board. */
+    public int getEmptyCount() {
+	return emptyCount;
     }
 
     /** Executes the given move on the board.
@@ -610,43 +965,8 @@ public class BoardGrid {
 	    return false;
 	}
 
-	// Sets final position to the correct side.
-	tokens[finalCol][finalRow] = side;
-	// Empties the initial position.
-	tokens[initialCol][initialRow] = Konane.NONE;
-
-	// Vertical move
-	if (initialCol == finalCol) {
-	    // "Down" jump, in the direction of increasing row numbers.
-	    if (initialRow < finalRow) {
-		for (int i = initialRow + 1; i < finalRow; i++) {
-		    tokens[initialCol][i] = Konane.NONE;
-		}
-	    }
-	    else { 
-		// "Up" jump, in the direction of decreasing row numbers.
-		for (int i = initialRow - 1; i > finalRow; i--) {
-		    tokens[initialCol][i] = Konane.NONE;
-		}
-	    }
-
-	}
-	// Horizontal move
-	else {
-	    // "Right" move, in the direction of increasing column numbers.
-	    if (initialCol < finalCol) {
-		for (int i = initialCol + 1; i < finalCol; i++) {
-		    tokens[i][initialRow] = Konane.NONE;
-		}
-	    }
-	    // "Left" move, in the direction of decreasing column numbers.
-	    else {
-		for (int i = initialCol - 1; i > finalCol; i--) {
-		    tokens[i][initialRow] = Konane.NONE;
-		}
-	    }
-
-	}
+	applyMove(MoveList.pack(initialCol, initialRow, finalCol, finalRow,
+			       side));
 	return true;
     }
 
@@ -673,6 +993,307 @@ public class BoardGrid {
 	}
     }
 
+    /** Executes a packed move on the board and returns a record that
+     * {@link #unmakeMove(int)} uses to take it back.
+     * <p>This method is meant for game tree searches: instead of calling
+     * {@link #copy()} before trying each candidate move, a search can make
+     * and unmake moves on a single board. The move is not validated, so it
+     * must be a legal move for the current position, such as one produced by
+     * {@link #generateMoves(byte, konaneCommon.MoveList)}. A Konane jump is
+     * completely determined by its end points and its side: the jumped
+     * squares held opposing tokens and the squares landed on in between
+     * were empty. The undo record is therefore the packed move itself, and
+     * undoing it touches only the squares along the jump.</p>
+     * @param move a legal packed move, see {@link konaneCommon.MoveList}.
+     * @return the undo record to pass to {@link #unmakeMove(int)}.
+     */
+    public int makeMove(int move) {
+	applyMove(move);
+	return move;
+    }
+
+    /** Takes back a move made by {@link #makeMove(int)}. Moves must be
+     * unmade in the reverse order in which they were made.
+     * @param undo the record returned by {@link #makeMove(int)}.
+     */
+    public void unmakeMove(int undo) {
+	revertMove(undo);
+    }
+
+    /** Changes the board's tokens to reflect a legal packed move: the
+     * initial position and every jumped position are emptied, and the final
+     * position is given the move's side. The hash and the occupancy masks
+     * are updated for the same squares. Every move made on the board goes
+     * through this method, so subclasses that keep additional state
+     * override it together with {@link #revertMove(int)}.
+     */
+    protected void applyMove(int move) {
+	int col = MoveList.initialCol(move);
+	int row = MoveList.initialRow(move);
+	int finalCol = MoveList.finalCol(move);
+	int finalRow = MoveList.finalRow(move);
+	int dc = direction(col, finalCol);
+	int dr = direction(row, finalRow);
+	byte side = MoveList.side(move);
+	int p = index(col, row);
+	int step = dr * stride + dc;
+	while (col != finalCol || row != finalRow) {
+	    put(col, row, p, Konane.NONE);
+	    col += dc;
+	    row += dr;
+	    p += step;
+	}
+	put(finalCol, finalRow, p, side);
+    }
+
+    /** Restores the tokens changed by {@link #applyMove(int)}: the initial
+     * position gets the move's side back, the jumped positions get the
+     * opposing side and the final position is emptied. The hash and the
+     * occupancy masks are restored along with them.
+     */
+    protected void revertMove(int move) {
+	int col = MoveList.initialCol(move);
+	int row = MoveList.initialRow(move);
+	int finalCol = MoveList.finalCol(move);
+	int finalRow = MoveList.finalRow(move);
+	int dc = direction(col, finalCol);
+	int dr = direction(row, finalRow);
+	byte side = MoveList.side(move);
+	byte opponent = (byte)~side;
+	int p = index(col, row);
+	int step = dr * stride + dc;
+	put(col, row, p, side);
+	col += dc;
+	row += dr;
+	p += step;
+	for (boolean jumped = true; col != finalCol || row != finalRow;
+	     jumped = !jumped) {
+	    put(col, row, p, jumped ? opponent : Konane.NONE);
+	    col += dc;
+	    row += dr;
+	    p += step;
+	}
+	put(finalCol, finalRow, p, Konane.NONE);
+    }
+
+    /** Returns 1, -1 or 0 as <code>to</code> is greater than, less than
+     * or equal to <code>from</code>. */
+    protected static int direction(int from, int to) {
+	return (to > from) ? 1 : ((to < from) ? -1 : 0);
+    }
+
+    /** Returns the number of geometric symmetries of the board: 8 for a
+     * square board (the identity, two mirrors, three rotations and two
+     * diagonal reflections) and 4 for any other (the identity, two mirrors
+     * and the 180 degree rotation).
+     * <p>A transform is a number from 0 to
+     * <code>getSymmetryCount() - 1</code>, optionally combined with
+     * {@link #SWAP_COLOURS}. Transform 0 is the identity, 1 mirrors the
+     * columns, 2 mirrors the rows, 3 rotates by 180 degrees, 4 reflects in
+     * the main diagonal, 5 and 6 rotate by 90 degrees in opposite
+     * directions and 7 reflects in the other diagonal.</p>
+     */
+    public int getSymmetryCount() {
+	return (width == height) ? 8 : 4;
+    }
+
+    /** Returns the hash of the canonical form of the board with
+     * <code>side</code> to move.
+     * <p>The canonical form is the symmetric variant of the position,
+     * including the variants with colours and side to move exchanged, whose
+     * hash {@link #getHash(byte)} is least. All symmetric positions
+     * therefore share one canonical hash, which makes it a suitable key for
+     * caches, opening books and endgame tables. The hash is computed in a
+     * single pass over the board.</p>
+     * @see #getCanonicalTransform(byte)
+     */
+    public long getCanonicalHash(byte side) {
+	canonicalize(side);
+	return canonicalHash;
+    }
+
+    /** Returns the transform that maps this position to its canonical form,
+     * for use with {@link #toCanonical(konaneCommon.Move, int)} and
+     * {@link #fromCanonical(konaneCommon.Move, int)}. When several
+     * transforms give the canonical form the smallest is returned, so a
+     * position that is already canonical returns 0.
+     * @see #getCanonicalHash(byte)
+     */
+    public int getCanonicalTransform(byte side) {
+	canonicalize(side);
+	return canonicalTransform;
+    }
+
+    /** Finds the canonical hash and transform of the position together,
+     * unless they are already known. They are kept until the position or
+     * the side to move changes, so asking for the hash and then the
+     * transform, as a table lookup does, costs one pass over the board,
+     * and only the first pass of a board allocates. */
+    private void canonicalize(byte side) {
+	long key = getHash(side);
+	if (canonicalKnown && canonicalKey == key) {
+	    return;
+	}
+	if (symmetryHashes == null) {
+	    symmetryHashes = new long[16];
+	}
+	symmetryHashes(side, symmetryHashes);
+	int index = canonicalIndex(symmetryHashes);
+	canonicalHash = symmetryHashes[index];
+	canonicalTransform = (index < 8) ? index :
+	    ((index - 8) | SWAP_COLOURS);
+	canonicalKey = key;
+	canonicalKnown = true;
+    }
+
+    /** Returns the index of the least of the hashes computed by
+     * {@link #symmetryHashes(byte, long[])}. */
+    private int canonicalIndex(long[] hashes) {
+	int count = getSymmetryCount();
+	int index = 0;
+	for (int t = 0; t < count; t++) {
+	    if (hashes[t] < hashes[index]) {
+		index = t;
+	    }
+	    if (hashes[t + 8] < hashes[index]) {
+		index = t + 8;
+	    }
+	}
+	return index;
+    }
+
+    /** Computes {@link #getHash(byte)} of every symmetric variant of the
+     * position into <code>hashes</code>, which has 16 entries. Entry
+     * <code>t</code> holds geometric transform <code>t</code> and entry
+     * <code>t + 8</code> the same transform with colours exchanged. */
+    private void symmetryHashes(byte side, long[] hashes) {
+	for (int t = 0; t < hashes.length; t++) {
+	    hashes[t] = 0;
+	}
+	int count = getSymmetryCount();
+	for (int i = 0; i < width; i++) {
+	    for (int j = 0; j < height; j++) {
+		byte token = cells[index(i, j)];
+		if (token != Konane.WHITE && token != Konane.BLACK) {
+		    continue;
+		}
+		byte swapped = (byte)~token;
+		for (int t = 0; t < count; t++) {
+		    int col = transformCol(t, i, j, width, height);
+		    int row = transformRow(t, i, j, width, height);
+		    hashes[t] ^= Zobrist.key(token, col, row);
+		    hashes[t + 8] ^= Zobrist.key(swapped, col, row);
+		}
+	    }
+	}
+	long dimension = Zobrist.dimensionKey(width, height);
+	long sideKey = (side == Konane.BLACK) ? Zobrist.BLACK_TO_MOVE : 0;
+	for (int t = 0; t < count; t++) {
+	    hashes[t] ^= dimension ^ sideKey;
+	    hashes[t + 8] ^= dimension ^ sideKey ^ Zobrist.BLACK_TO_MOVE;
+	}
+    }
+
+    /** Returns a new board holding the position transformed by
+     * <code>transform</code>.
+     * @param transform a geometric transform less than
+     * {@link #getSymmetryCount()}, optionally combined with
+     * {@link #SWAP_COLOURS}.
+     */
+    public BoardGrid transform(int transform) {
+	BoardGrid board = copy();
+	int t = transform & 7;
+	boolean swap = (transform & SWAP_COLOURS) != 0;
+	for (int i = 0; i < width; i++) {
+	    for (int j = 0; j < height; j++) {
+		byte token = cells[index(i, j)];
+		if (swap && (token == Konane.WHITE || token == Konane.BLACK)) {
+		    token = (byte)~token;
+		}
+		board.tokens[transformCol(t, i, j, width, height)]
+		    [transformRow(t, i, j, width, height)] = token;
+	    }
+	}
+	board.resync();
+	return board;
+    }
+
+    /** Maps a move on this board to the corresponding move on the board
+     * given by {@link #transform(int)}. With {@link #SWAP_COLOURS} the
+     * move's side is exchanged as well. The comment is kept.
+     * @param move a move on this board.
+     * @param transform the transform, usually
+     * {@link #getCanonicalTransform(byte)}.
+     */
+    public Move toCanonical(Move move, int transform) {
+	int t = transform & 7;
+	byte side = move.getSide();
+	if ((transform & SWAP_COLOURS) != 0) {
+	    side = (byte)~side;
+	}
+	return new Move(transformCol(t, move.getInitialCol(),
+				     move.getInitialRow(), width, height),
+			transformRow(t, move.getInitialCol(),
+				     move.getInitialRow(), width, height),
+			transformCol(t, move.getFinalCol(),
+				     move.getFinalRow(), width, height),
+			transformRow(t, move.getFinalCol(),
+				     move.getFinalRow(), width, height),
+			side, move.getComment());
+    }
+
+    /** Maps a move on the transformed board back to this board. This is
+     * the inverse of {@link #toCanonical(konaneCommon.Move, int)}.
+     */
+    public Move fromCanonical(Move move, int transform) {
+	return toCanonical(move, inverseTransform(transform));
+    }
+
+    /** Returns the transform that undoes <code>transform</code>. Every
+     * transform is its own inverse except the two 90 degree rotations,
+     * which undo each other. */
+    public static int inverseTransform(int transform) {
+	int t = transform & 7;
+	if (t == 5 || t == 6) {
+	    return (transform & ~7) | (11 - t);
+	}
+	return transform;
+    }
+
+    /** Returns the column that <code>(col, row)</code> is mapped to by
+     * geometric transform <code>t</code> on a board of the given
+     * dimensions. Transforms from 4 up exchange the width and height. */
+    public static int transformCol(int t, int col, int row,
+				   int width, int height) {
+	switch (t) {
+	case 1: case 3:
+	    return width - 1 - col;
+	case 4: case 6:
+	    return row;
+	case 5: case 7:
+	    return height - 1 - row;
+	default:
+	    return col;
+	}
+    }
+
+    /** Returns the row that <code>(col, row)</code> is mapped to by
+     * geometric transform <code>t</code> on a board of the given
+     * dimensions. */
+    public static int transformRow(int t, int col, int row,
+				   int width, int height) {
+	switch (t) {
+	case 2: case 3:
+	    return height - 1 - row;
+	case 4: case 5:
+	    return col;
+	case 6: case 7:
+	    return width - 1 - col;
+	default:
+	    return row;
+	}
+    }
+
     /** Returns a grid of ASCII characters representing the current
      * state of the board. One row is printed per line with the columns
      * separated by spaces. 'W' represents a white token, 'B' represents
@@ -683,23 +1304,23 @@ public class BoardGrid {
      * @see konaneCommon.Konane#NONE
      */
     public String toString() {
-	String temp = new String();
+	StringBuffer temp = new StringBuffer((2 * width + 1) * height);
 	for (int i = 0; i < height; i++) {
-	    for (int j = 0; j < width; j++) {
-		byte token = tokens[j][i];
+	    for (int p = index(0, i), end = p + width; p < end; p++) {
+		byte token = cells[p];
 		if (token == Konane.WHITE) {
-		    temp += "W ";
+		    temp.append("W ");
 		}
 		else if (token == Konane.BLACK) {
-		    temp += "B ";
+		    temp.append("B ");
 		}
 		else {
-		    temp += "_ ";
+		    temp.append("_ ");
 		}
 	    }
-	    temp += "\n";
+	    temp.append('\n');
 	}
-	return temp;
+	return temp.toString();
     }
 
 }
@@ -0,0 +1,133 @@
+/* CpuClock.java
+ * Konane Game System
+ * MIT IEEE IAP Programming Competition 2001
+ */
+
+package konaneCommon;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Enumeration;
+import java.util.Hashtable;
+
+/** Measures the processor time used by a group of threads.
+
+ * <p>A referee that charges players processor time rather than elapsed
+ * time runs each player's threads in a {@link java.lang.ThreadGroup} of
+ * its own. Threads a player starts join its group, so the player's
+ * helper threads are charged to it too. {@link #start()} notes the
+ * processor time of every thread in the group and {@link #read()} adds
+ * up what each has used since, counting threads started in between from
+ * zero.</p>
+
+ * <p>The JVM cannot report the processor time of a thread that has
+ * ended, so every read also remembers what each thread had used so far,
+ * and a thread that has gone by the next read is charged what it had
+ * used at the last one. The referee reads the clock every few
+ * milliseconds while a move runs; a thread that ends between two reads
+ * loses only what it used since the first of them. Referees also charge
+ * at least a share of the elapsed time, see
+ * {@link konaneCommon.PlayerWorker#charge(long, long)}, so a player
+ * gains nothing by doing its work in short-lived threads.</p>
+ */
+public final class CpuClock {
+
+    private final static ThreadMXBean THREADS =
+	ManagementFactory.getThreadMXBean();
+
+    private final ThreadGroup group;
+
+    /** Processor time of each thread at {@link #start()}, by thread id. */
+    private final Hashtable<Long, Long> started =
+	new Hashtable<Long, Long>();
+
+    /** Processor time of each live thread at the last read, by thread
+     * id. */
+    private final Hashtable<Long, Long> sampled =
+	new Hashtable<Long, Long>();
+
+    /** Processor time used since {@link #start()} by threads that have
+     * ended. */
+    private long ended;
+
+    /** Creates a clock for a group of threads. */
+    public CpuClock(ThreadGroup group) {
+	this.group = group;
+    }
+
+    /** Returns true if the JVM can measure the processor time of
+     * threads. */
+    public static boolean isSupported() {
+	return THREADS.isThreadCpuTimeSupported() &&
+	    THREADS.isThreadCpuTimeEnabled();
+    }
+
+    /** Notes the processor time used so far by the group's threads. */
+    public synchronized void start() {
+	started.clear();
+	sampled.clear();
+	ended = 0;
+	Thread[] threads = threads();
+	for (int i = 0; i < threads.length; i++) {
+	    Long id = Long.valueOf(threads[i].getId());
+	    long time = THREADS.getThreadCpuTime(id.longValue());
+	    if (time >= 0) {
+		started.put(id, Long.valueOf(time));
+		sampled.put(id, Long.valueOf(time));
+	    }
+	}
+    }
+
+    /** Returns the nanoseconds of processor time the group's threads
+     * have used since {@link #start()}, or -1 if the JVM cannot tell.
+     * It may be read any number of times. */
+    public synchronized long read() {
+	if (!isSupported()) {
+	    return -1;
+	}
+	Hashtable<Long, Long> live = new Hashtable<Long, Long>();
+	long total = 0;
+	Thread[] threads = threads();
+	for (int i = 0; i < threads.length; i++) {
+	    Long id = Long.valueOf(threads[i].getId());
+	    long time = THREADS.getThreadCpuTime(id.longValue());
+	    if (time < 0) {
+		// Ended since it was listed: charged below.
+		continue;
+	    }
+	    live.put(id, Long.valueOf(time));
+	    total += time - startOf(id);
+	}
+	Enumeration<Long> ids = sampled.keys();
+	while (ids.hasMoreElements()) {
+	    Long id = ids.nextElement();
+	    if (!live.containsKey(id)) {
+		ended += sampled.get(id).longValue() - startOf(id);
+		started.remove(id);
+	    }
+	}
+	sampled.clear();
+	sampled.putAll(live);
+	return total + ended;
+    }
+
+    /** Returns the processor time of a thread at {@link #start()}, or 0
+     * if it started later. */
+    private long startOf(Long id) {
+	Long time = started.get(id);
+	return (time == null) ? 0 : time.longValue();
+    }
+
+    /** Returns the live threads of the group. */
+    private Thread[] threads() {
+	Thread[] threads = new Thread[group.activeCount() + 8];
+	int count;
+	while ((count = group.enumerate(threads, true)) == threads.length) {
+	    threads = new Thread[threads.length * 2];
+	}
+	Thread[] live = new Thread[count];
+	System.arraycopy(threads, 0, live, 0, count);
+	return live;
+    }
+
+}
@@ -0,0 +1,97 @@
+/* Deadline.java
+ * Konane Game System
+ * MIT IEEE IAP Programming Competition 2001
+ */
+
+package konaneCommon;
+
+/** The time limits of one move, and the means of calling it off.
+
+ * <p>The referee creates a deadline at the start of every move and passes
+ * it to {@link konaneCommon.Player#makeMove(konaneCommon.BoardGrid,
+ * konaneCommon.Deadline)}. It has two limits. The soft limit is when the
+ * player's clock runs out: a move returned later loses the game. The hard
+ * limit, a short grace period later, is when the referee stops waiting
+ * for the player's computation to finish.</p>
+
+ * <p>When the soft limit passes without a move, the referee cancels the
+ * deadline and interrupts the player's thread. A player should then stop
+ * whatever it is doing and return, so that it frees the processor for the
+ * rest of the tournament. Long computations should therefore poll
+ * {@link #shouldStop()} or {@link java.lang.Thread#isInterrupted()} now
+ * and then; code that sleeps or waits sees the interrupt as an
+ * {@link java.lang.InterruptedException}.</p>
+
+ * <p>All times are measured with <code>System.nanoTime()</code>.
+ * Deadlines may be read and cancelled from any thread. When the referee
+ * charges processor time instead (see
+ * {@link konaneCommon.PlayerWorker#CPU_CLOCK}), the soft limit is when the
+ * clock would run out if the player had a processor to itself, and the
+ * referee may let the move run past it.</p>
+ */
+public final class Deadline {
+
+    private final long start;
+    private final long softDeadline;
+    private final long hardDeadline;
+    private volatile boolean cancelled;
+
+    /** Creates a deadline starting now.
+     * @param allowedTime the milliseconds until the soft limit.
+     * @param grace the milliseconds from the soft limit to the hard
+     * limit.
+     */
+    public Deadline(long allowedTime, long grace) {
+	start = System.nanoTime();
+	softDeadline = start + Math.max(0, allowedTime) * 1000000L;
+	hardDeadline = softDeadline + Math.max(0, grace) * 1000000L;
+    }
+
+    /** Returns the <code>System.nanoTime()</code> of the soft limit, when
+     * the player's clock runs out. */
+    public long getSoftDeadline() {
+	return softDeadline;
+    }
+
+    /** Returns the <code>System.nanoTime()</code> of the hard limit, when
+     * the referee stops waiting for the player. */
+    public long getHardDeadline() {
+	return hardDeadline;
+    }
+
+    /** Returns the milliseconds left until the soft limit, or 0 once it
+     * has passed. */
+    public long getTimeLeft() {
+	return Math.max(0, (softDeadline - System.nanoTime()) / 1000000L);
+    }
+
+    /** Returns the milliseconds since the deadline was created. */
+    public long getElapsed() {
+	return (System.nanoTime() - start) / 1000000L;
+    }
+
+    /** Returns true once the soft limit has passed. */
+    public boolean isExpired() {
+	return System.nanoTime() - softDeadline >= 0;
+    }
+
+    /** Calls the move off. The referee does this when the soft limit
+     * passes, and interrupts the player's thread as well. */
+    public void cancel() {
+	cancelled = true;
+    }
+
+    /** Returns true if the move has been called off. */
+    public boolean isCancelled() {
+	return cancelled;
+    }
+
+    /** Returns true if the player should stop computing: the move has
+     * been called off, the soft limit has passed, or the current thread
+     * has been interrupted. */
+    public boolean shouldStop() {
+	return cancelled || isExpired() ||
+	    Thread.currentThread().isInterrupted();
+    }
+
+}
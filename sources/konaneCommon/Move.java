@@ -21,6 +21,11 @@ import java.io.Serializable;
  * Comments can be made visible during the tournament at the organizers'
  * discretion.</p>
 
+ * <p>A move never changes once it is created. Moves with an empty comment
+ * can therefore be shared, and {@link #of(int, int, int, int, int, int,
+ * byte)} returns one shared instance for each jump on a board of a given
+ * size.</p>
+
  * @author Paul Pham
  * @version 1.14, 17 January 2001
  */
@@ -28,25 +33,25 @@ public class Move {
 
     /** The initial column number of a move, numbered from 0.
      */
-    private int initialCol;
+    private final int initialCol;
     /** The initial row number of a move, numbered from 0.
      */
-    private int initialRow;
+    private final int initialRow;
     /** The final column number of a move, numbered from 0.
      */
-    private int finalCol;
+    private final int finalCol;
     /** The final row number of a move, numbered from 0.
      */
-    private int finalRow;
+    private final int finalRow;
     /** The side which made the move, either black or white; sides are
      * defined as byte constants in {@link konaneCommon.Konane}.
      * @see konaneCommon.Konane#WHITE
      * @see konaneCommon.Konane#BLACK
      */
-    private byte side;
+    private final byte side;
     /** Optional comment as a <code>String</code>, limited to 22 characters.
      */
-    private String comment;
+    private final String comment;
 
     /** Default constructor that accepts the initial position, final position,
      * and side of a move, along with an optional comment. The positions
@@ -73,6 +78,42 @@ public class Move {
 	}
     }
 
+    /** Returns a move with an empty comment for a board of the given
+     * dimensions.
+     * <p>If the move is a jump that fits on such a board, the same shared
+     * instance is returned every time, so move generators and decoders
+     * need not allocate one. Otherwise, for example for a forfeit, a new
+     * move is created.</p>
+     * @param width the width of the board the move is made on.
+     * @param height the height of the board the move is made on.
+     */
+    public static Move of(int width, int height,
+			  int initialCol, int initialRow,
+			  int finalCol, int finalRow, byte side) {
+	MoveTable table = MoveTable.forBoard(width, height);
+	Move move = (table == null) ? null :
+	    table.get(initialCol, initialRow, finalCol, finalRow, side);
+	return (move != null) ? move :
+	    new Move(initialCol, initialRow, finalCol, finalRow, side, "");
+    }
+
+    /** Returns a move for a board of the given dimensions, shared as by
+     * {@link #of(int, int, int, int, int, int, byte)} if
+     * <code>comment</code> is null or empty. A move with a comment is
+     * always created anew to carry it.
+     */
+    public static Move of(int width, int height,
+			  int initialCol, int initialRow,
+			  int finalCol, int finalRow, byte side,
+			  String comment) {
+	if (comment == null || comment.length() == 0) {
+	    return of(width, height, initialCol, initialRow,
+		      finalCol, finalRow, side);
+	}
+	return new Move(initialCol, initialRow, finalCol, finalRow,
+			side, comment);
+    }
+
     /** Returns the initial column of the move. */
     public int getInitialCol() {
 	return initialCol;
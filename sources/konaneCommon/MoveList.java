@@ -0,0 +1,178 @@
+/* MoveList.java
+ * Konane Game System
+ * MIT IEEE IAP Programming Competition 2001
+ */
+
+package konaneCommon;
+
+/** A reusable list of moves packed into <code>int</code>s.
+
+ * <p>A <code>MoveList</code> is filled by
+ * {@link konaneCommon.BoardGrid#generateMoves(byte, konaneCommon.MoveList)}
+ * without allocating an object per move, which makes it suitable for use
+ * inside a game tree search: keep one list per search depth and
+ * {@link #clear()} it before each use. The backing array only grows, so a
+ * list that has reached its working size never allocates again.</p>
+
+ * <p>Each move is packed into a single non-negative <code>int</code> that
+ * holds the initial column and row, the final column and row (7 bits
+ * each, enough for {@link konaneCommon.Konane#MAX_COL} and
+ * {@link konaneCommon.Konane#MAX_ROW}) and the side making the move. The
+ * static methods of this class pack and unpack moves and convert them to
+ * and from {@link konaneCommon.Move}, so only the moves that actually cross
+ * the {@link konaneCommon.Player#makeMove(konaneCommon.BoardGrid, long)}
+ * boundary need to be allocated.</p>
+ */
+public final class MoveList {
+
+    /** Value returned in place of a packed move when there is none, for
+     * example when a {@link konaneCommon.Move} lies outside the largest
+     * board and cannot be packed. */
+    public final static int NO_MOVE = -1;
+
+    /** Bit set in a packed move made by {@link konaneCommon.Konane#BLACK}.
+     */
+    private final static int BLACK_BIT = 1 << 28;
+
+    /** The packed moves. */
+    private int[] moves;
+
+    /** The number of moves in the list. */
+    private int size;
+
+    /** Creates an empty list with room for 64 moves. */
+    public MoveList() {
+	this(64);
+    }
+
+    /** Creates an empty list with room for <code>capacity</code> moves
+     * before the backing array has to grow. */
+    public MoveList(int capacity) {
+	moves = new int[(capacity > 0) ? capacity : 1];
+    }
+
+    /** Returns the number of moves in the list. */
+    public int size() {
+	return size;
+    }
+
+    /** Removes all moves from the list. The backing array is kept. */
+    public void clear() {
+	size = 0;
+    }
+
+    /** Shortens the list to its first <code>size</code> moves. */
+    public void truncate(int size) {
+	if (size < this.size) {
+	    this.size = size;
+	}
+    }
+
+    /** Appends a packed move to the list. */
+    public void add(int move) {
+	if (size == moves.length) {
+	    int[] grown = new int[moves.length * 2];
+	    System.arraycopy(moves, 0, grown, 0, size);
+	    moves = grown;
+	}
+	moves[size++] = move;
+    }
+
+    /** Returns the packed move at <code>index</code>. */
+    public int get(int index) {
+	return moves[index];
+    }
+
+    /** Replaces the packed move at <code>index</code>. */
+    public void set(int index, int move) {
+	moves[index] = move;
+    }
+
+    /** Exchanges the moves at <code>i</code> and <code>j</code>. Useful
+     * for ordering moves in place. */
+    public void swap(int i, int j) {
+	int temp = moves[i];
+	moves[i] = moves[j];
+	moves[j] = temp;
+    }
+
+    /** Returns the move at <code>index</code> as a new
+     * {@link konaneCommon.Move} with an empty comment. */
+    public Move moveAt(int index) {
+	return toMove(moves[index]);
+    }
+
+    /** Packs a move into an <code>int</code>. All coordinates must lie
+     * between 0 and 127 inclusive.
+     * @param side {@link konaneCommon.Konane#WHITE} or
+     * {@link konaneCommon.Konane#BLACK}.
+     */
+    public static int pack(int initialCol, int initialRow,
+			   int finalCol, int finalRow, byte side) {
+	return (initialCol << 21) | (initialRow << 14) | (finalCol << 7) |
+	    finalRow | ((side == Konane.BLACK) ? BLACK_BIT : 0);
+    }
+
+    /** Packs a {@link konaneCommon.Move}, dropping its comment.
+     * @return the packed move, or {@link #NO_MOVE} if <code>move</code> is
+     * null, has an invalid side or has a coordinate that does not fit on
+     * the largest board, such as a forfeit.
+     */
+    public static int pack(Move move) {
+	if (move == null ||
+	    (move.getSide() != Konane.WHITE &&
+	     move.getSide() != Konane.BLACK) ||
+	    !fits(move.getInitialCol()) || !fits(move.getInitialRow()) ||
+	    !fits(move.getFinalCol()) || !fits(move.getFinalRow())) {
+	    return NO_MOVE;
+	}
+	return pack(move.getInitialCol(), move.getInitialRow(),
+		    move.getFinalCol(), move.getFinalRow(), move.getSide());
+    }
+
+    /** Determines whether a coordinate fits in a packed move. */
+    private static boolean fits(int coordinate) {
+	return (coordinate >= 0) && (coordinate < 128);
+    }
+
+    /** Unpacks a move into a new {@link konaneCommon.Move} with an empty
+     * comment. */
+    public static Move toMove(int move) {
+	return new Move(initialCol(move), initialRow(move),
+			finalCol(move), finalRow(move), side(move), "");
+    }
+
+    /** Returns the initial column of a packed move. */
+    public static int initialCol(int move) {
+	return (move >>> 21) & 0x7F;
+    }
+
+    /** Returns the initial row of a packed move. */
+    public static int initialRow(int move) {
+	return (move >>> 14) & 0x7F;
+    }
+
+    /** Returns the final column of a packed move. */
+    public static int finalCol(int move) {
+	return (move >>> 7) & 0x7F;
+    }
+
+    /** Returns the final row of a packed move. */
+    public static int finalRow(int move) {
+	return move & 0x7F;
+    }
+
+    /** Returns the side of a packed move. */
+    public static byte side(int move) {
+	return ((move & BLACK_BIT) != 0) ? Konane.BLACK : Konane.WHITE;
+    }
+
+    /** Converts a packed move to a string of the same form as
+     * {@link konaneCommon.Move#toString()}, without the comment. */
+    public static String toString(int move) {
+	return "(" + initialCol(move) + "," + initialRow(move) + ") to (" +
+	    finalCol(move) + "," + finalRow(move) + ") for " +
+	    Konane.sideToString(side(move));
+    }
+
+}
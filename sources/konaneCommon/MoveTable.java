@@ -0,0 +1,136 @@
+/* MoveTable.java
+ * Konane Game System
+ * MIT IEEE IAP Programming Competition 2001
+ */
+
+package konaneCommon;
+
+/** The shared {@link konaneCommon.Move} instances of one board dimension.
+
+ * <p>On a board of a given width and height only a bounded number of
+ * jumps are geometrically possible: straight moves by an even, nonzero
+ * number of squares that stay on the board. A <code>MoveTable</code> has a
+ * slot for each of them and each side, and fills a slot with a
+ * <code>Move</code> with an empty comment the first time it is asked for,
+ * so move generators and network decoders return one instance per jump
+ * instead of allocating a new one every time. <code>Move</code> is
+ * immutable, which makes the instances safe to share between boards and
+ * threads.</p>
+
+ * <p>Tables are created on demand, one per dimension, by
+ * {@link #forBoard(int, int)}. They are used through
+ * {@link konaneCommon.Move#of(int, int, int, int, int, int, byte)}.</p>
+ */
+final class MoveTable {
+
+    /** The tables created so far, indexed by
+     * <code>width * (MAX_ROW + 1) + height</code>. */
+    private final static MoveTable[] TABLES =
+	new MoveTable[(Konane.MAX_COL + 1) * (Konane.MAX_ROW + 1)];
+
+    /** The dimensions of the board. */
+    private final int width, height;
+
+    /** The number of columns, and of rows, of each parity. */
+    private final int halfWidth, halfHeight;
+
+    /** The index of the first vertical jump; horizontal jumps come first.
+     */
+    private final int vertical;
+
+    /** The white and the black moves. A horizontal jump is at
+     * <code>(initialRow * width + initialCol) * halfWidth + finalCol /
+     * 2</code> and a vertical jump at {@link #vertical} plus
+     * <code>(initialCol * height + initialRow) * halfHeight + finalRow /
+     * 2</code>; the final position has the same parity as the initial
+     * one, so this leaves no gaps apart from the zero-length jumps. */
+    private final Move[] white, black;
+
+    private MoveTable(int width, int height) {
+	this.width = width;
+	this.height = height;
+	halfWidth = (width + 1) / 2;
+	halfHeight = (height + 1) / 2;
+	vertical = height * width * halfWidth;
+	white = new Move[vertical + width * height * halfHeight];
+	black = new Move[white.length];
+    }
+
+    /** Returns the table of moves for a board of the given dimensions,
+     * creating it if necessary, or null if the dimensions are not between
+     * 1 and {@link konaneCommon.Konane#MAX_COL} and
+     * {@link konaneCommon.Konane#MAX_ROW}. */
+    static MoveTable forBoard(int width, int height) {
+	if (width < 1 || width > Konane.MAX_COL ||
+	    height < 1 || height > Konane.MAX_ROW) {
+	    return null;
+	}
+	int index = width * (Konane.MAX_ROW + 1) + height;
+	MoveTable table = TABLES[index];
+	if (table == null) {
+	    synchronized (TABLES) {
+		table = TABLES[index];
+		if (table == null) {
+		    table = new MoveTable(width, height);
+		    TABLES[index] = table;
+		}
+	    }
+	}
+	return table;
+    }
+
+    /** Returns the shared instance of a move, or null if the move is not a
+     * jump that is geometrically possible on this board or the side is
+     * neither {@link konaneCommon.Konane#WHITE} nor
+     * {@link konaneCommon.Konane#BLACK}. */
+    Move get(int initialCol, int initialRow, int finalCol, int finalRow,
+	     byte side) {
+	Move[] moves;
+	if (side == Konane.WHITE) {
+	    moves = white;
+	}
+	else if (side == Konane.BLACK) {
+	    moves = black;
+	}
+	else {
+	    return null;
+	}
+	if (initialCol < 0 || initialCol >= width ||
+	    initialRow < 0 || initialRow >= height ||
+	    finalCol < 0 || finalCol >= width ||
+	    finalRow < 0 || finalRow >= height) {
+	    return null;
+	}
+	int index;
+	if (initialRow == finalRow && initialCol != finalCol &&
+	    ((initialCol ^ finalCol) & 1) == 0) {
+	    index = (initialRow * width + initialCol) * halfWidth +
+		(finalCol >> 1);
+	}
+	else if (initialCol == finalCol && initialRow != finalRow &&
+		 ((initialRow ^ finalRow) & 1) == 0) {
+	    index = vertical + (initialCol * height + initialRow) * halfHeight +
+		(finalRow >> 1);
+	}
+	else {
+	    return null;
+	}
+	Move move = moves[index];
+	if (move == null) {
+	    // Two threads may both create the move; either instance will do.
+	    move = new Move(initialCol, initialRow, finalCol, finalRow,
+			    side, "");
+	    moves[index] = move;
+	}
+	return move;
+    }
+
+    /** Returns the shared instance of a packed move, or null as
+     * {@link #get(int, int, int, int, byte)} does. */
+    Move get(int move) {
+	return get(MoveList.initialCol(move), MoveList.initialRow(move),
+		   MoveList.finalCol(move), MoveList.finalRow(move),
+		   MoveList.side(move));
+    }
+
+}
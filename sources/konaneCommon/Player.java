@@ -72,6 +72,33 @@ public abstract class Player {
      */
     public abstract Move makeMove(BoardGrid oldBoard, long allowedTime);
 
+    /** The entry point used by the simulator and the client.
+     * <p>The referee calls this method rather than
+     * {@link #makeMove(konaneCommon.BoardGrid, long)}, passing a
+     * {@link konaneCommon.Deadline} instead of the time left. If the
+     * player runs out of time the referee cancels the deadline and
+     * interrupts the player's thread, and the player should then return
+     * promptly. The default implementation calls
+     * {@link #makeMove(konaneCommon.BoardGrid, long)} with the time left,
+     * so players written for the older method need not change; override
+     * this one to watch the deadline while computing.</p>
+     * @param oldBoard the Konane gameboard before you make a move.
+     * @param deadline the time limits of this move.
+     * @return a valid {@link konaneCommon.Move} or a voluntary forfeit. A null move will count as an error and an involuntary forfeit.
+     */
+    public Move makeMove(BoardGrid oldBoard, Deadline deadline) {
+	return makeMove(oldBoard, deadline.getTimeLeft());
+    }
+
+    /** Called by the simulator and the client when the game is over.
+     * <p>Override this method to release whatever the player holds for
+     * the game, such as threads it started or large tables, so that a
+     * tournament of many games does not run out of them. The player is
+     * not used afterwards. The default implementation does nothing.</p>
+     */
+    public void endGame() {
+    }
+
 }
 
 
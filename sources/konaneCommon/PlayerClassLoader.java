@@ -6,10 +6,64 @@
 
 package konaneCommon;
 
-public final class PlayerClassLoader extends ClassLoader {
+import java.net.URL;
+import java.net.URLClassLoader;
 
-    public Class loadClass(String className) throws ClassNotFoundException {
-	return findSystemClass(className);
+/** Loads the classes of one contestant's package.
+
+ * <p>The loader is child-first for that package and its subpackages: it
+ * defines their classes itself from its own class path before asking its
+ * parent, so each contestant gets its own copy of its classes and
+ * statics, and two contestants, or two tournaments, can use the same
+ * class names without clashing. Every other class, including
+ * {@link konaneCommon.Player} and the rest of the game system, comes from
+ * the parent, so that all players share one <code>Player</code> class. A
+ * class of the package that is not on the loader's class path is taken
+ * from the parent too.</p>
+
+ * <p>Use {@link konaneCommon.PlayerLoader}, which keeps one loader per
+ * package and releases it when the player is finished.</p>
+ */
+public final class PlayerClassLoader extends URLClassLoader {
+
+    static {
+	registerAsParallelCapable();
+    }
+
+    /** The package name followed by a dot. */
+    private final String prefix;
+
+    /** Creates a loader for a package.
+     * @param packageName the contestant's package.
+     * @param classPath where to find the package's classes.
+     * @param parent the loader of everything else.
+     */
+    public PlayerClassLoader(String packageName, URL[] classPath,
+			     ClassLoader parent) {
+	super(classPath, parent);
+	prefix = packageName + ".";
+    }
+
+    protected Class loadClass(String className, boolean resolve)
+	throws ClassNotFoundException {
+	if (!className.startsWith(prefix)) {
+	    return super.loadClass(className, resolve);
+	}
+	synchronized (getClassLoadingLock(className)) {
+	    Class loaded = findLoadedClass(className);
+	    if (loaded == null) {
+		try {
+		    loaded = findClass(className);
+		}
+		catch (ClassNotFoundException e) {
+		    loaded = super.loadClass(className, false);
+		}
+	    }
+	    if (resolve) {
+		resolveClass(loaded);
+	    }
+	    return loaded;
+	}
     }
 
 }
@@ -0,0 +1,152 @@
+/* PlayerLoader.java
+ * Konane Game System
+ * MIT IEEE IAP Programming Competition 2001
+ */
+
+package konaneCommon;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Constructor;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.Enumeration;
+import java.util.Hashtable;
+import java.util.StringTokenizer;
+
+/** Creates contestants' players, loading each package once.
+
+ * <p>The first time a package is asked for, the loader gives it its own
+ * {@link konaneCommon.PlayerClassLoader}, resolves its
+ * <code>Player</code> class and looks up the constructor; later players
+ * of the same package are created from the cached constructor. A
+ * tournament keeps one loader for all its games, so every game of a team
+ * shares the team's classes while different tournaments in the same JVM
+ * keep theirs apart.</p>
+
+ * <p>When a team is finished, {@link #unload(java.lang.String)} forgets
+ * its classes and closes its class loader, so that they can be collected
+ * once the last of its players is gone.</p>
+ */
+public final class PlayerLoader {
+
+    /** A package's class loader and player constructor. */
+    private final static class Entry {
+	final PlayerClassLoader loader;
+	final Constructor constructor;
+
+	Entry(PlayerClassLoader loader, Constructor constructor) {
+	    this.loader = loader;
+	    this.constructor = constructor;
+	}
+    }
+
+    private final URL[] classPath;
+    private final ClassLoader parent;
+    private final Hashtable entries = new Hashtable();
+
+    /** Creates a loader that finds packages on the JVM's class path. */
+    public PlayerLoader() {
+	this(systemClassPath());
+    }
+
+    /** Creates a loader that finds packages on the given class path. */
+    public PlayerLoader(URL[] classPath) {
+	this.classPath = classPath;
+	this.parent = PlayerLoader.class.getClassLoader();
+    }
+
+    /** Returns the entries of the <code>java.class.path</code> property
+     * as URLs. */
+    private static URL[] systemClassPath() {
+	StringTokenizer tokens =
+	    new StringTokenizer(System.getProperty("java.class.path", "."),
+				File.pathSeparator);
+	URL[] urls = new URL[tokens.countTokens()];
+	for (int i = 0; i < urls.length; i++) {
+	    try {
+		urls[i] = new File(tokens.nextToken()).toURI().toURL();
+	    }
+	    catch (MalformedURLException e) {
+		throw new IllegalStateException(e.toString());
+	    }
+	}
+	return urls;
+    }
+
+    /** Creates a new player of a package.
+     * @param name the package, whose <code>Player</code> class must extend
+     * {@link konaneCommon.Player} and have a public constructor without
+     * parameters.
+     * @throws ReflectiveOperationException if the class cannot be loaded
+     * or instantiated.
+     * @throws ClassCastException if the class is not a player.
+     */
+    public Player newPlayer(String name)
+	throws ReflectiveOperationException {
+	Constructor constructor = resolve(name).constructor;
+	return (Player)constructor.newInstance(new Object[0]);
+    }
+
+    /** Returns the cached entry of a package, loading it if need be. */
+    private synchronized Entry resolve(String name)
+	throws ReflectiveOperationException {
+	Entry entry = (Entry)entries.get(name);
+	if (entry == null) {
+	    PlayerClassLoader loader =
+		new PlayerClassLoader(name, classPath, parent);
+	    try {
+		Class type = Class.forName(name + ".Player", true, loader);
+		if (!Player.class.isAssignableFrom(type)) {
+		    throw new ClassCastException(type.getName() +
+						 " is not a player");
+		}
+		entry = new Entry(loader, type.getConstructor(new Class[0]));
+	    }
+	    catch (ReflectiveOperationException e) {
+		close(loader);
+		throw e;
+	    }
+	    catch (RuntimeException e) {
+		close(loader);
+		throw e;
+	    }
+	    entries.put(name, entry);
+	}
+	return entry;
+    }
+
+    /** Returns true if a package's classes are loaded. */
+    public synchronized boolean isLoaded(String name) {
+	return entries.containsKey(name);
+    }
+
+    /** Forgets a package's classes and closes its class loader. Players
+     * already created keep working; a later player of the package loads
+     * its classes afresh. */
+    public synchronized void unload(String name) {
+	Entry entry = (Entry)entries.remove(name);
+	if (entry != null) {
+	    close(entry.loader);
+	}
+    }
+
+    /** Unloads every package. */
+    public synchronized void unloadAll() {
+	Enumeration names = entries.keys();
+	while (names.hasMoreElements()) {
+	    unload((String)names.nextElement());
+	}
+    }
+
+    /** Closes a class loader, releasing its open files. */
+    private static void close(PlayerClassLoader loader) {
+	try {
+	    loader.close();
+	}
+	catch (IOException e) {
+	    // Nothing more can be released.
+	}
+    }
+
+}
@@ -0,0 +1,384 @@
+/* PlayerWorker.java
+ * Konane Game System
+ * MIT IEEE IAP Programming Competition 2001
+ */
+
+package konaneCommon;
+
+/** Runs a {@link konaneCommon.Player}'s moves on a thread of its own, for
+ * the referee.
+
+ * <p>By default the worker keeps one thread for the whole game. The
+ * referee hands it each turn with {@link #startMove(konaneCommon.BoardGrid,
+ * konaneCommon.Deadline)} and waits with {@link #awaitMove()}; the two
+ * threads meet on the worker's monitor, so no thread is created or torn
+ * down while the clock runs. When the system property
+ * <code>konane.threadPerMove</code> is true, or the worker is created
+ * with <code>persistent</code> false, each move gets a new thread
+ * instead, as the referees did before.</p>
+
+ * <p>The worker times each move with <code>System.nanoTime()</code>,
+ * from just before it stops the player's pondering (see
+ * {@link konaneCommon.PonderingPlayer}) to the return of
+ * {@link konaneCommon.Player#makeMove(konaneCommon.BoardGrid,
+ * konaneCommon.Deadline)}. A move that throws an exception returns a null
+ * move. The worker's threads are daemon threads, so a player that never
+ * returns cannot keep the program alive.</p>
+
+ * <p>The worker's threads belong to a {@link java.lang.ThreadGroup} of
+ * the player's own, which the threads the player starts join too, and the
+ * worker measures the processor time the whole group uses during each
+ * move with a {@link konaneCommon.CpuClock}. Pondering is started on the
+ * worker's thread with {@link #startPondering(konaneCommon.BoardGrid)},
+ * so that the pondering threads, and any helpers they start, are in the
+ * group as well. When the system property <code>konane.clock</code> is
+ * <code>cpu</code> the referees charge that processor time rather than
+ * the elapsed time, so that a player is not charged for time it spends
+ * waiting for the processor while other games run; see
+ * {@link #awaitMove()}.</p>
+ */
+public final class PlayerWorker {
+
+    /** Whether workers create a thread for every move by default. */
+    public final static boolean THREAD_PER_MOVE =
+	Boolean.getBoolean("konane.threadPerMove");
+
+    /** Whether the referees charge processor time rather than elapsed
+     * time. False if the JVM cannot measure the processor time of
+     * threads. */
+    public final static boolean CPU_CLOCK =
+	"cpu".equals(System.getProperty("konane.clock")) &&
+	CpuClock.isSupported();
+
+    /** Under the processor time clock, how many times its time left a
+     * move may take in elapsed time before it is called off anyway. */
+    public final static int WALL_SLACK =
+	Math.max(1, Integer.getInteger("konane.wallSlack", 4).intValue());
+
+    /** Milliseconds between looks at a move's processor time. */
+    private final static long POLL = 10;
+
+    private final Player player;
+    private final String name;
+    private final boolean persistent;
+    private final ThreadGroup group;
+    private final CpuClock clock;
+
+    /** The persistent thread, or the thread of the latest move. */
+    private Thread thread;
+
+    // The state of the current move, guarded by this worker.
+    private BoardGrid board;
+    private Deadline deadline;
+    private long started;
+    private BoardGrid ponderBoard;
+    private boolean requested;
+    private boolean busy;
+    private boolean closed;
+    private Move move;
+    private long elapsed;
+    private long cpuTime;
+
+    /** Creates a worker that uses one thread for the whole game unless
+     * <code>konane.threadPerMove</code> is set.
+     * @param name the name of the worker's threads.
+     */
+    public PlayerWorker(Player player, String name) {
+	this(player, name, !THREAD_PER_MOVE);
+    }
+
+    /** Creates a worker.
+     * @param name the name of the worker's threads.
+     * @param persistent whether to keep one thread for the whole game
+     * rather than create one for every move.
+     */
+    public PlayerWorker(Player player, String name, boolean persistent) {
+	this.player = player;
+	this.name = name;
+	this.persistent = persistent;
+	this.group = new ThreadGroup(name);
+	this.clock = new CpuClock(group);
+	if (persistent) {
+	    thread = new Thread(group, name) {
+		    public void run() {
+			serve();
+		    }
+		};
+	    thread.setDaemon(true);
+	    thread.start();
+	}
+    }
+
+    /** Hands the player a move to make.
+     * @param board the board, which the player may keep.
+     * @param deadline the time limits of the move.
+     * @throws IllegalStateException if a move is in progress or the
+     * worker has been closed.
+     */
+    public synchronized void startMove(BoardGrid board, Deadline deadline) {
+	if (busy || closed) {
+	    throw new IllegalStateException(busy ? "a move is in progress" :
+					    "the worker is closed");
+	}
+	this.board = board;
+	this.deadline = deadline;
+	started = System.nanoTime();
+	clock.start();
+	move = null;
+	elapsed = 0;
+	cpuTime = 0;
+	busy = true;
+	if (persistent) {
+	    requested = true;
+	    notifyAll();
+	}
+	else {
+	    thread = new Thread(group, name) {
+		    public void run() {
+			play();
+		    }
+		};
+	    thread.setDaemon(true);
+	    thread.start();
+	}
+    }
+
+    /** Lets a {@link konaneCommon.PonderingPlayer} think about the board
+     * while its opponent moves, starting the pondering on the worker's
+     * thread and waiting until it has started. Does nothing for other
+     * players.
+     * @throws IllegalStateException if a move is in progress or the
+     * worker has been closed.
+     */
+    public synchronized void startPondering(BoardGrid board) {
+	if (!(player instanceof PonderingPlayer)) {
+	    return;
+	}
+	if (busy || closed) {
+	    throw new IllegalStateException(busy ? "a move is in progress" :
+					    "the worker is closed");
+	}
+	ponderBoard = board;
+	busy = true;
+	if (persistent) {
+	    notifyAll();
+	}
+	else {
+	    thread = new Thread(group, name) {
+		    public void run() {
+			ponder();
+		    }
+		};
+	    thread.setDaemon(true);
+	    thread.start();
+	}
+	boolean interrupted = false;
+	while (busy) {
+	    try {
+		wait();
+	    }
+	    catch (InterruptedException e) {
+		interrupted = true;
+	    }
+	}
+	if (interrupted) {
+	    Thread.currentThread().interrupt();
+	}
+    }
+
+    /** Waits for the move. With the elapsed time clock the referee waits
+     * until the soft limit of the move's deadline. With the processor
+     * time clock it waits until the move has been charged as much time
+     * as the deadline allowed (see {@link #charge(long, long)}), or until
+     * it has taken {@link #WALL_SLACK} times that in elapsed time, reading
+     * the processor time of the player's threads every few
+     * milliseconds.
+     * @return true if the player returned a move in time.
+     */
+    public synchronized boolean awaitMove() throws InterruptedException {
+	if (!CPU_CLOCK) {
+	    return awaitMove(deadline.getSoftDeadline());
+	}
+	long allowed = deadline.getSoftDeadline() - started;
+	long limit = started + WALL_SLACK * allowed;
+	// Reading the clock often also catches the time of threads that
+	// end during the move; see CpuClock.
+	while (!awaitMove(Math.min(System.nanoTime() + POLL * 1000000L,
+				   limit))) {
+	    if (System.nanoTime() - limit >= 0 ||
+		charge(System.nanoTime() - started, clock.read()) >= allowed) {
+		return false;
+	    }
+	}
+	return true;
+    }
+
+    /** Waits for the move until a <code>System.nanoTime()</code>. */
+    private boolean awaitMove(long limit) throws InterruptedException {
+	while (busy) {
+	    long left = limit - System.nanoTime();
+	    if (left <= 0) {
+		return false;
+	    }
+	    wait(left / 1000000L, (int)(left % 1000000L));
+	}
+	return true;
+    }
+
+    /** Calls the move in progress off: cancels its deadline, interrupts
+     * the player's thread and waits until the move has returned or the
+     * grace period of the deadline, from its soft limit to its hard
+     * limit, has passed, counting from now or from the soft limit,
+     * whichever is later.
+     * @return true if the player stopped.
+     */
+    public synchronized boolean cancel() {
+	if (!busy) {
+	    return true;
+	}
+	deadline.cancel();
+	thread.interrupt();
+	long grace = deadline.getHardDeadline() - deadline.getSoftDeadline();
+	long limit = Math.max(deadline.getHardDeadline(),
+			      System.nanoTime() + grace);
+	try {
+	    while (busy) {
+		long left = limit - System.nanoTime();
+		if (left <= 0) {
+		    break;
+		}
+		wait(left / 1000000L, (int)(left % 1000000L));
+	    }
+	}
+	catch (InterruptedException e) {
+	    Thread.currentThread().interrupt();
+	}
+	return !busy;
+    }
+
+    /** Returns the move returned by the player, or null if it has not
+     * returned one or threw an exception. */
+    public synchronized Move getMove() {
+	return move;
+    }
+
+    /** Returns the nanoseconds the last move took, or has taken so far
+     * if it has not returned. */
+    public synchronized long getElapsed() {
+	return (busy && ponderBoard == null) ?
+	    System.nanoTime() - started : elapsed;
+    }
+
+    /** Returns the nanoseconds of processor time the player's threads
+     * used during the last move, or have used so far if it has not
+     * returned, or -1 if the JVM cannot tell. */
+    public synchronized long getCpuTime() {
+	return (busy && ponderBoard == null) ? clock.read() : cpuTime;
+    }
+
+    /** Returns the nanoseconds a referee charges a move under the
+     * processor time clock: the processor time of the player's threads,
+     * but at least its elapsed time divided by {@link #WALL_SLACK}, so
+     * that a player whose threads escape the clock is still charged for
+     * the time it takes. If the processor time is not known, the elapsed
+     * time. */
+    public static long charge(long elapsed, long cpuTime) {
+	if (cpuTime < 0) {
+	    return elapsed;
+	}
+	return Math.max(cpuTime, elapsed / WALL_SLACK);
+    }
+
+    /** Lets the worker's thread end once it is idle. The worker cannot be
+     * used afterwards. */
+    public synchronized void close() {
+	closed = true;
+	notifyAll();
+    }
+
+    /** The loop of the persistent thread. */
+    private void serve() {
+	while (true) {
+	    boolean ponder = false;
+	    synchronized (this) {
+		while (!requested && ponderBoard == null && !closed) {
+		    try {
+			wait();
+		    }
+		    catch (InterruptedException e) {
+			// Left over from a move that was called off.
+		    }
+		}
+		if (closed) {
+		    return;
+		}
+		if (ponderBoard != null) {
+		    ponder = true;
+		}
+		else {
+		    requested = false;
+		}
+	    }
+	    if (ponder) {
+		ponder();
+	    }
+	    else {
+		play();
+	    }
+	}
+    }
+
+    /** Makes one move and reports it. */
+    private void play() {
+	BoardGrid board;
+	Deadline deadline;
+	synchronized (this) {
+	    board = this.board;
+	    deadline = this.deadline;
+	    this.board = null;
+	}
+	long start = System.nanoTime();
+	Move result = null;
+	try {
+	    if (player instanceof PonderingPlayer) {
+		((PonderingPlayer)player).stopPondering();
+	    }
+	    result = player.makeMove(board, deadline);
+	}
+	catch (Exception e) {
+	    System.err.println(e.toString());
+	}
+	long time = System.nanoTime() - start;
+	long cpu = clock.read();
+	// An interrupt that came as the move returned must not reach the
+	// next one; cancel() only interrupts while the worker is busy.
+	Thread.interrupted();
+	synchronized (this) {
+	    move = result;
+	    elapsed = time;
+	    cpuTime = cpu;
+	    busy = false;
+	    notifyAll();
+	}
+    }
+
+    /** Starts the player pondering and reports that it has. */
+    private void ponder() {
+	BoardGrid board;
+	synchronized (this) {
+	    board = ponderBoard;
+	}
+	try {
+	    ((PonderingPlayer)player).startPondering(board);
+	}
+	catch (Exception e) {
+	    System.err.println(e.toString());
+	}
+	synchronized (this) {
+	    ponderBoard = null;
+	    busy = false;
+	    notifyAll();
+	}
+    }
+
+}
@@ -0,0 +1,38 @@
+/* PonderingPlayer.java
+ * Konane Game System
+ * MIT IEEE IAP Programming Competition 2001
+ */
+
+package konaneCommon;
+
+/** A {@link konaneCommon.Player} that thinks while its opponent moves.
+
+ * <p>The simulator and the client call
+ * {@link #startPondering(konaneCommon.BoardGrid)} as soon as the player's
+ * move has been accepted, with the board after that move, and
+ * {@link #stopPondering()} at the start of the player's next turn, before
+ * {@link konaneCommon.Player#makeMove(konaneCommon.BoardGrid, long)}, and
+ * when the game ends. In between, the player may use the machine while
+ * the opponent's clock runs, for instance to search the position after
+ * the reply it expects, so that it can answer at once if the prediction
+ * comes true.</p>
+
+ * <p>The time taken by <code>stopPondering</code> is charged to the
+ * player's own clock, so it should return promptly.</p>
+ */
+public abstract class PonderingPlayer extends Player {
+
+    /** Starts thinking on the opponent's time. This method must return at
+     * once, leaving the thinking to a thread of the player's own.
+     * @param board the board after the player's move, with the opponent
+     * to move. The player may keep it.
+     */
+    public abstract void startPondering(BoardGrid board);
+
+    /** Stops thinking and waits until the pondering thread has stopped.
+     * Called before every move and at the end of the game, so it must do
+     * nothing if the player is not pondering.
+     */
+    public abstract void stopPondering();
+
+}
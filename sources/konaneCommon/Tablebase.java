@@ -0,0 +1,346 @@
+/* Tablebase.java
+ * Konane Game System
+ * MIT IEEE IAP Programming Competition 2001
+ */
+
+package konaneCommon;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/** An endgame table of small Konane boards, read straight from a
+ * memory-mapped file.
+
+ * <p>The table records, for every position on every board up to a given
+ * size, whether the side to move wins, how many moves the game lasts when
+ * the winner hurries and the loser holds out, and a move that achieves
+ * this. Positions are stored once per symmetry class under their
+ * canonical hash {@link konaneCommon.BoardGrid#getCanonicalHash(byte)},
+ * with the best move expressed on the canonical form of the board.</p>
+
+ * <p>The file is an open-addressed hash table of 16 byte slots behind a
+ * 64 byte header, and is mapped into memory rather than read: opening a
+ * table costs no time and no heap however large it is, and lookups read
+ * the mapped pages directly. Tables are written by
+ * <code>konaneEngine.TablebaseGenerator</code>, one layer of positions
+ * with the same number of tokens at a time. The header records how many
+ * layers are complete, so an interrupted generation can be resumed and a
+ * partly generated table can already be used for the smaller
+ * positions.</p>
+
+ * <p>A table opened read-only may be probed by many threads at once.</p>
+ */
+public final class Tablebase {
+
+    /** The first four bytes of every table file, "KTB1". */
+    public final static int MAGIC = 0x4B544231;
+
+    /** Size in bytes of the file header. */
+    public final static int HEADER_SIZE = 64;
+
+    /** Size in bytes of one slot. */
+    public final static int SLOT_SIZE = 16;
+
+    /** Largest number of slots, as a base 2 logarithm, that fits in one
+     * mapped buffer. */
+    public final static int MAX_SLOT_BITS = 26;
+
+    // Header offsets.
+    private final static int WIDTH_OFFSET = 4;
+    private final static int HEIGHT_OFFSET = 8;
+    private final static int CELLS_OFFSET = 12;
+    private final static int BITS_OFFSET = 16;
+    private final static int LAYERS_OFFSET = 20;
+    private final static int ENTRIES_OFFSET = 24;
+
+    // Layout of a slot's data word: the win flag in bit 0, the length of
+    // the game in bits 1-8, the best move in bits 9-37 and a flag marking
+    // the slot as used in bit 62.
+    private final static int PLIES_SHIFT = 1;
+    private final static int MOVE_SHIFT = 9;
+    private final static long MOVE_MASK = (1L << 29) - 1;
+    private final static long USED = 1L << 62;
+
+    /** The mapped file. */
+    private final MappedByteBuffer buffer;
+
+    /** Whether the table may be written. */
+    private final boolean writable;
+
+    /** Mask that turns a hash into a slot index. */
+    private final int mask;
+
+    /** Dimensions the table was generated for. */
+    private final int maxWidth, maxHeight, maxCells;
+
+    /** Opens an existing table for reading.
+     * @exception IOException if the file cannot be read or is not a
+     * table.
+     */
+    public Tablebase(File file) throws IOException {
+	this(file, false);
+    }
+
+    /** Opens an existing table.
+     * @param writable whether {@link #put(long, long)} and the other
+     * methods that change the table may be used.
+     * @exception IOException if the file cannot be opened or is not a
+     * table.
+     */
+    public Tablebase(File file, boolean writable) throws IOException {
+	this.writable = writable;
+	buffer = map(file, -1, writable);
+	if (buffer.capacity() < HEADER_SIZE ||
+	    buffer.getInt(0) != MAGIC) {
+	    throw new IOException(file + " is not a Konane tablebase");
+	}
+	int bits = buffer.getInt(BITS_OFFSET);
+	if (bits < 1 || bits > MAX_SLOT_BITS ||
+	    buffer.capacity() != HEADER_SIZE + ((long)SLOT_SIZE << bits)) {
+	    throw new IOException(file + " is truncated or corrupt");
+	}
+	mask = (1 << bits) - 1;
+	maxWidth = buffer.getInt(WIDTH_OFFSET);
+	maxHeight = buffer.getInt(HEIGHT_OFFSET);
+	maxCells = buffer.getInt(CELLS_OFFSET);
+    }
+
+    /** Creates an empty, writable table, replacing any existing file.
+     * @param maxWidth the largest board width the table will cover.
+     * @param maxHeight the largest board height the table will cover.
+     * @param maxCells the largest number of squares of a covered board.
+     * @param bits the base 2 logarithm of the number of slots, from 1 to
+     * {@link #MAX_SLOT_BITS}.
+     * @exception IOException if the file cannot be written.
+     */
+    public static Tablebase create(File file, int maxWidth, int maxHeight,
+				   int maxCells, int bits)
+	throws IOException {
+	if (bits < 1 || bits > MAX_SLOT_BITS) {
+	    throw new IllegalArgumentException("bits must be from 1 to " +
+					       MAX_SLOT_BITS);
+	}
+	file.delete();
+	MappedByteBuffer buffer =
+	    map(file, HEADER_SIZE + ((long)SLOT_SIZE << bits), true);
+	buffer.putInt(WIDTH_OFFSET, maxWidth);
+	buffer.putInt(HEIGHT_OFFSET, maxHeight);
+	buffer.putInt(CELLS_OFFSET, maxCells);
+	buffer.putInt(BITS_OFFSET, bits);
+	buffer.putInt(0, MAGIC);
+	buffer.force();
+	return new Tablebase(file, true);
+    }
+
+    /** Maps a file into memory. The channel is closed again at once; the
+     * mapping stays valid until the buffer is garbage collected.
+     * @param size the size to give the file, or -1 to keep its size.
+     */
+    private static MappedByteBuffer map(File file, long size,
+					boolean writable)
+	throws IOException {
+	RandomAccessFile raf = new RandomAccessFile(file,
+						    writable ? "rw" : "r");
+	try {
+	    if (size >= 0) {
+		raf.setLength(size);
+	    }
+	    FileChannel channel = raf.getChannel();
+	    return channel.map(writable ? FileChannel.MapMode.READ_WRITE :
+			       FileChannel.MapMode.READ_ONLY,
+			       0, channel.size());
+	}
+	finally {
+	    raf.close();
+	}
+    }
+
+    /** Returns the largest board width the table covers. */
+    public int getMaxWidth() {
+	return maxWidth;
+    }
+
+    /** Returns the largest board height the table covers. */
+    public int getMaxHeight() {
+	return maxHeight;
+    }
+
+    /** Returns the largest number of squares of a covered board. */
+    public int getMaxCells() {
+	return maxCells;
+    }
+
+    /** Returns the number of slots. */
+    public int size() {
+	return mask + 1;
+    }
+
+    /** Returns the number of positions stored. */
+    public long getEntryCount() {
+	return buffer.getLong(ENTRIES_OFFSET);
+    }
+
+    /** Returns the number of complete layers. Every position of a covered
+     * board with fewer tokens than this is in the table. */
+    public int getCompletedLayers() {
+	return buffer.getInt(LAYERS_OFFSET);
+    }
+
+    /** Determines whether a board is covered by the table, that is
+     * whether every position on it with fewer tokens than
+     * {@link #getCompletedLayers()} can be found. */
+    public boolean covers(BoardGrid board) {
+	int width = board.getWidth();
+	int height = board.getHeight();
+	return (width <= maxWidth) && (height <= maxHeight) &&
+	    (width * height <= maxCells);
+    }
+
+    /** Looks up a position by its canonical hash.
+     * @return the data word of the position, to be decoded with
+     * {@link #isWin(long)}, {@link #plies(long)} and {@link #move(long)},
+     * or 0 if the position is not in the table.
+     */
+    public long probe(long key) {
+	int slot = slot(key);
+	for (int i = 0; i <= mask; i++) {
+	    int offset = HEADER_SIZE + slot * SLOT_SIZE;
+	    long data = buffer.getLong(offset + 8);
+	    if (data == 0) {
+		return 0;
+	    }
+	    if (buffer.getLong(offset) == key) {
+		return data;
+	    }
+	    slot = (slot + 1) & mask;
+	}
+	return 0;
+    }
+
+    /** Looks up a position.
+     * @return the data word of the position, or 0 if it is not in the
+     * table.
+     * @see #probe(long)
+     */
+    public long probe(BoardGrid board, byte side) {
+	return probe(board.getCanonicalHash(side));
+    }
+
+    /** Returns the side that wins a position with best play, or
+     * {@link konaneCommon.Konane#NONE} if the position is not in the
+     * table. */
+    public byte getWinner(BoardGrid board, byte side) {
+	long data = probe(board, side);
+	if (data == 0) {
+	    return Konane.NONE;
+	}
+	return isWin(data) ? side : (byte)~side;
+    }
+
+    /** Returns the best move of a position as a packed move on
+     * <code>board</code>, or {@link konaneCommon.MoveList#NO_MOVE} if the
+     * position is not in the table or the side to move has no moves. When
+     * the side to move wins the move wins as quickly as possible;
+     * otherwise it makes the game last as long as possible. */
+    public int getBestMove(BoardGrid board, byte side) {
+	long data = probe(board, side);
+	int move = move(data);
+	if (move == MoveList.NO_MOVE) {
+	    return move;
+	}
+	int transform = board.getCanonicalTransform(side);
+	return MoveList.pack(board.fromCanonical(MoveList.toMove(move),
+						 transform));
+    }
+
+    /** Returns whether the side to move wins, given a data word. */
+    public static boolean isWin(long data) {
+	return (data & 1) != 0;
+    }
+
+    /** Returns the number of moves left in the game with best play, given
+     * a data word. */
+    public static int plies(long data) {
+	return (int)(data >>> PLIES_SHIFT) & 0xFF;
+    }
+
+    /** Returns the best move on the canonical form of the position, given
+     * a data word, or {@link konaneCommon.MoveList#NO_MOVE} if there is
+     * none. */
+    public static int move(long data) {
+	long move = (data >>> MOVE_SHIFT) & MOVE_MASK;
+	return (data == 0 || move == MOVE_MASK) ?
+	    MoveList.NO_MOVE : (int)move;
+    }
+
+    /** Packs the record of a position into a data word.
+     * @param win whether the side to move wins.
+     * @param plies the number of moves left with best play, at most 255.
+     * @param move the best move on the canonical form of the position, or
+     * {@link konaneCommon.MoveList#NO_MOVE}.
+     */
+    public static long encode(boolean win, int plies, int move) {
+	return USED | (win ? 1 : 0) | ((long)(plies & 0xFF) << PLIES_SHIFT) |
+	    (((move < 0) ? MOVE_MASK : (move & MOVE_MASK)) << MOVE_SHIFT);
+    }
+
+    /** Stores a position, replacing any earlier record of it. Must not be
+     * called while other threads use the table.
+     * @param key the canonical hash of the position.
+     * @param data the record, as returned by
+     * {@link #encode(boolean, int, int)}.
+     * @exception IllegalStateException if the table is full.
+     */
+    public void put(long key, long data) {
+	checkWritable();
+	int slot = slot(key);
+	for (int i = 0; i <= mask; i++) {
+	    int offset = HEADER_SIZE + slot * SLOT_SIZE;
+	    long old = buffer.getLong(offset + 8);
+	    if (old == 0) {
+		buffer.putLong(offset, key);
+		buffer.putLong(offset + 8, data);
+		buffer.putLong(ENTRIES_OFFSET, getEntryCount() + 1);
+		return;
+	    }
+	    if (buffer.getLong(offset) == key) {
+		buffer.putLong(offset + 8, data);
+		return;
+	    }
+	    slot = (slot + 1) & mask;
+	}
+	throw new IllegalStateException("tablebase is full");
+    }
+
+    /** Records that every position with fewer than <code>layers</code>
+     * tokens has been stored, after writing the table to disk. */
+    public void setCompletedLayers(int layers) {
+	checkWritable();
+	buffer.force();
+	buffer.putInt(LAYERS_OFFSET, layers);
+	buffer.force();
+    }
+
+    /** Writes any changes to disk. */
+    public void force() {
+	buffer.force();
+    }
+
+    private void checkWritable() {
+	if (!writable) {
+	    throw new IllegalStateException("tablebase is read-only");
+	}
+    }
+
+    /** Returns the first slot to try for a key. The canonical hash picks
+     * the least of several hashes, so its low bits are mixed with the
+     * high ones before use. */
+    private int slot(long key) {
+	key *= 0x9E3779B97F4A7C15L;
+	return (int)(key >>> 32) & mask;
+    }
+
+}
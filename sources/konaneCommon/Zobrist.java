@@ -0,0 +1,107 @@
+/* Zobrist.java
+ * Konane Game System
+ * MIT IEEE IAP Programming Competition 2001
+ */
+
+package konaneCommon;
+
+/** Random keys for Zobrist hashing of Konane positions.
+
+ * <p>A position's hash is the exclusive or of one key per token on the
+ * board, chosen by the token's side and position, together with a key for
+ * the board's dimensions. Because exclusive or is its own inverse, a move
+ * updates the hash by combining only the keys of the squares it changes.
+ * {@link konaneCommon.BoardGrid} maintains its hash this way; see
+ * {@link konaneCommon.BoardGrid#getHash()}.</p>
+
+ * <p>The keys are generated from a fixed seed, so hashes are the same in
+ * every run and can be stored in files.</p>
+ */
+public final class Zobrist {
+
+    /** Number of positions on the largest board. */
+    private final static int CELLS = Konane.MAX_COL * Konane.MAX_ROW;
+
+    /** Keys for white tokens, indexed by <code>row * MAX_COL + col</code>.
+     */
+    private final static long[] WHITE_KEYS = new long[CELLS];
+
+    /** Keys for black tokens, indexed by <code>row * MAX_COL + col</code>.
+     */
+    private final static long[] BLACK_KEYS = new long[CELLS];
+
+    /** Keys for the board width, indexed by width. */
+    private final static long[] WIDTH_KEYS = new long[Konane.MAX_COL + 1];
+
+    /** Keys for the board height, indexed by height. */
+    private final static long[] HEIGHT_KEYS = new long[Konane.MAX_ROW + 1];
+
+    /** Key combined with a position's hash when black is to move. */
+    public final static long BLACK_TO_MOVE;
+
+    /** State of the key generator. */
+    private static long state = 0x4B6F6E616E65L;
+
+    static {
+	for (int i = 0; i < CELLS; i++) {
+	    WHITE_KEYS[i] = next();
+	    BLACK_KEYS[i] = next();
+	}
+	for (int i = 0; i < WIDTH_KEYS.length; i++) {
+	    WIDTH_KEYS[i] = next();
+	}
+	for (int i = 0; i < HEIGHT_KEYS.length; i++) {
+	    HEIGHT_KEYS[i] = next();
+	}
+	BLACK_TO_MOVE = next();
+    }
+
+    /** Private constructor to prevent instantiation. */
+    private Zobrist() {}
+
+    /** Returns the next key of a SplitMix64 sequence. */
+    private static long next() {
+	long z = (state += 0x9E3779B97F4A7C15L);
+	z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+	z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+	return z ^ (z >>> 31);
+    }
+
+    /** Returns the key of a token at the given position.
+     * @param token the side of the token.
+     * @return the key, or 0 if <code>token</code> is neither
+     * {@link konaneCommon.Konane#WHITE} nor
+     * {@link konaneCommon.Konane#BLACK}, so that empty positions can be
+     * combined without testing for them.
+     */
+    public static long key(byte token, int col, int row) {
+	if (token == Konane.WHITE) {
+	    return WHITE_KEYS[row * Konane.MAX_COL + col];
+	}
+	else if (token == Konane.BLACK) {
+	    return BLACK_KEYS[row * Konane.MAX_COL + col];
+	}
+	return 0;
+    }
+
+    /** Returns the key of a board's dimensions. */
+    public static long dimensionKey(int width, int height) {
+	return WIDTH_KEYS[width] ^ HEIGHT_KEYS[height];
+    }
+
+    /** Computes the hash of a board from scratch. The result equals
+     * {@link konaneCommon.BoardGrid#getHash()} for the same board.
+     */
+    public static long hash(BoardGrid board) {
+	int width = board.getWidth();
+	int height = board.getHeight();
+	long hash = dimensionKey(width, height);
+	for (int i = 0; i < width; i++) {
+	    for (int j = 0; j < height; j++) {
+		hash ^= key(board.getTokenAt(i, j), i, j);
+	    }
+	}
+	return hash;
+    }
+
+}
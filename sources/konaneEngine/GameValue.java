@@ -0,0 +1,462 @@
+/* GameValue.java
+ * Konane Game System
+ * MIT IEEE IAP Programming Competition 2001
+ */
+
+package konaneEngine;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+
+/** The value of a short combinatorial game, in canonical form.
+
+ * <p>A game is given by the games its two players can move to: the left
+ * options, for {@link konaneCommon.Konane#WHITE}, and the right options,
+ * for {@link konaneCommon.Konane#BLACK}. A player who cannot move loses,
+ * as in Konane. Every game equals exactly one game in canonical form, the
+ * one with no dominated and no reversible options, so two values are equal
+ * exactly when they are the same <code>GameValue</code>: canonical forms
+ * are interned when they are created.</p>
+
+ * <p>The value of a sum of independent games, such as the regions of a
+ * Konane board found by {@link konaneEngine.RegionAnalyzer}, is the sum of
+ * their values, and the sign of the sum decides who wins: Left wins if it
+ * is positive, Right if it is negative, the second player if it is zero,
+ * and the first player if it is fuzzy, that is confused with zero.
+ * Comparisons and sums are cached, so repeated small values cost little.</p>
+
+ * <p>All methods may be called from any thread; they share one lock.</p>
+ */
+public final class GameValue {
+
+    /** Canonical forms by their options, see {@link #key}. */
+    private final static HashMap<String, GameValue> INTERNED =
+	new HashMap<String, GameValue>();
+
+    /** Interned values in order of creation. */
+    private final static ArrayList<GameValue> VALUES =
+	new ArrayList<GameValue>();
+
+    /** Results of {@link #le(GameValue, GameValue)} for interned values,
+     * keyed by both ids. */
+    private final static HashMap<Long, Boolean> LE_CACHE =
+	new HashMap<Long, Boolean>();
+
+    /** Results of {@link #add(GameValue)}, keyed by both ids. */
+    private final static HashMap<Long, GameValue> SUM_CACHE =
+	new HashMap<Long, GameValue>();
+
+    /** The game in which neither player can move. */
+    public final static GameValue ZERO = intern(new GameValue[0],
+						new GameValue[0]);
+
+    /** The options of the game, sorted by id once interned. */
+    private final GameValue[] left, right;
+
+    /** The index of an interned value in {@link #VALUES}, or -1 while a
+     * game is being simplified. */
+    private int id = -1;
+
+    /** The negative of this value, once computed. */
+    private GameValue negative;
+
+    private GameValue(GameValue[] left, GameValue[] right) {
+	this.left = left;
+	this.right = right;
+    }
+
+    /** Returns the canonical value of the game with the given options.
+     * The options need not be distinct or undominated.
+     */
+    public static synchronized GameValue of(GameValue[] left,
+					    GameValue[] right) {
+	return canonical(left.clone(), right.clone());
+    }
+
+    /** Returns the number of left options of the canonical form. */
+    public int getLeftCount() {
+	return left.length;
+    }
+
+    /** Returns the number of right options of the canonical form. */
+    public int getRightCount() {
+	return right.length;
+    }
+
+    /** Returns a left option of the canonical form. */
+    public GameValue getLeft(int index) {
+	return left[index];
+    }
+
+    /** Returns a right option of the canonical form. */
+    public GameValue getRight(int index) {
+	return right[index];
+    }
+
+    /** Returns the sum of this value and <code>other</code>. */
+    public GameValue add(GameValue other) {
+	synchronized (GameValue.class) {
+	    return sum(this, other);
+	}
+    }
+
+    /** Returns the negative of this value: the same game with the players'
+     * roles exchanged. */
+    public GameValue negate() {
+	synchronized (GameValue.class) {
+	    return negative(this);
+	}
+    }
+
+    /** Determines whether this value is at most <code>other</code>, that
+     * is whether Right, moving second, wins
+     * <code>other - this</code>. */
+    public boolean isLessOrEqual(GameValue other) {
+	synchronized (GameValue.class) {
+	    return le(this, other);
+	}
+    }
+
+    /** Determines whether Left wins this game when Left moves first. */
+    public boolean leftWinsMovingFirst() {
+	return !isLessOrEqual(ZERO);
+    }
+
+    /** Determines whether Right wins this game when Right moves first. */
+    public boolean rightWinsMovingFirst() {
+	return !ZERO.isLessOrEqual(this);
+    }
+
+    /** Returns the number of distinct values created so far. */
+    public static synchronized int getInternedCount() {
+	return VALUES.size();
+    }
+
+    // ----------------------------------------------------------------
+    // The methods below are called with the class lock held.
+
+    private static GameValue sum(GameValue g, GameValue h) {
+	if (g == ZERO) {
+	    return h;
+	}
+	if (h == ZERO) {
+	    return g;
+	}
+	if (g.id > h.id) {
+	    GameValue t = g;
+	    g = h;
+	    h = t;
+	}
+	Long key = pairKey(g, h);
+	GameValue cached = SUM_CACHE.get(key);
+	if (cached != null) {
+	    return cached;
+	}
+	GameValue[] left = new GameValue[g.left.length + h.left.length];
+	GameValue[] right = new GameValue[g.right.length + h.right.length];
+	for (int i = 0; i < g.left.length; i++) {
+	    left[i] = sum(g.left[i], h);
+	}
+	for (int i = 0; i < h.left.length; i++) {
+	    left[g.left.length + i] = sum(g, h.left[i]);
+	}
+	for (int i = 0; i < g.right.length; i++) {
+	    right[i] = sum(g.right[i], h);
+	}
+	for (int i = 0; i < h.right.length; i++) {
+	    right[g.right.length + i] = sum(g, h.right[i]);
+	}
+	GameValue result = canonical(left, right);
+	SUM_CACHE.put(key, result);
+	return result;
+    }
+
+    /** Returns a cache key for an ordered pair of interned values. The ids
+     * are multiplied by an odd constant, which keeps keys distinct but
+     * spreads them over <code>Long.hashCode()</code>, since ids are small.
+     */
+    private static Long pairKey(GameValue g, GameValue h) {
+	return Long.valueOf((((long)g.id << 32) | h.id) * 0x9E3779B97F4A7C15L);
+    }
+
+    private static GameValue negative(GameValue g) {
+	if (g.negative == null) {
+	    GameValue[] left = new GameValue[g.right.length];
+	    GameValue[] right = new GameValue[g.left.length];
+	    for (int i = 0; i < left.length; i++) {
+		left[i] = negative(g.right[i]);
+	    }
+	    for (int i = 0; i < right.length; i++) {
+		right[i] = negative(g.left[i]);
+	    }
+	    g.negative = canonical(left, right);
+	    g.negative.negative = g;
+	}
+	return g.negative;
+    }
+
+    /** Determines whether <code>g &lt;= h</code>: no left option of
+     * <code>g</code> is at least <code>h</code> and no right option of
+     * <code>h</code> is at most <code>g</code>. Games that are still being
+     * simplified are compared without the cache. */
+    private static boolean le(GameValue g, GameValue h) {
+	if (g == h) {
+	    return true;
+	}
+	Long key = null;
+	if (g.id >= 0 && h.id >= 0) {
+	    key = pairKey(g, h);
+	    Boolean cached = LE_CACHE.get(key);
+	    if (cached != null) {
+		return cached.booleanValue();
+	    }
+	}
+	boolean result = true;
+	for (int i = 0; result && i < g.left.length; i++) {
+	    result = !le(h, g.left[i]);
+	}
+	for (int i = 0; result && i < h.right.length; i++) {
+	    result = !le(h.right[i], g);
+	}
+	if (key != null) {
+	    LE_CACHE.put(key, Boolean.valueOf(result));
+	}
+	return result;
+    }
+
+    /** Simplifies the game with the given canonical options to canonical
+     * form by repeatedly removing dominated options and bypassing
+     * reversible ones, and interns it. The arrays may be modified. */
+    private static GameValue canonical(GameValue[] left, GameValue[] right) {
+	boolean changed = true;
+	while (changed) {
+	    left = undominated(left, true);
+	    right = undominated(right, false);
+	    GameValue g = new GameValue(left, right);
+	    changed = false;
+
+	    // A left option is reversible through one of its right options
+	    // that is at most g; Left's move there is replaced by the left
+	    // options of that right option.
+	    ArrayList<GameValue> options = new ArrayList<GameValue>();
+	    for (int i = 0; i < left.length; i++) {
+		GameValue reverse = null;
+		for (int j = 0; reverse == null && j < left[i].right.length;
+		     j++) {
+		    if (le(left[i].right[j], g)) {
+			reverse = left[i].right[j];
+		    }
+		}
+		if (reverse == null) {
+		    options.add(left[i]);
+		}
+		else {
+		    options.addAll(Arrays.asList(reverse.left));
+		    changed = true;
+		}
+	    }
+	    GameValue[] newLeft = options.toArray(new GameValue[0]);
+
+	    // Likewise for right options reversible through a left option
+	    // that is at least g.
+	    options.clear();
+	    for (int i = 0; i < right.length; i++) {
+		GameValue reverse = null;
+		for (int j = 0; reverse == null && j < right[i].left.length;
+		     j++) {
+		    if (le(g, right[i].left[j])) {
+			reverse = right[i].left[j];
+		    }
+		}
+		if (reverse == null) {
+		    options.add(right[i]);
+		}
+		else {
+		    options.addAll(Arrays.asList(reverse.right));
+		    changed = true;
+		}
+	    }
+	    left = newLeft;
+	    right = options.toArray(new GameValue[0]);
+	}
+	return intern(left, right);
+    }
+
+    /** Removes duplicate options and options dominated by another: for
+     * Left those at most another option, for Right those at least
+     * another. */
+    private static GameValue[] undominated(GameValue[] options,
+					   boolean forLeft) {
+	ArrayList<GameValue> kept = new ArrayList<GameValue>();
+	for (int i = 0; i < options.length; i++) {
+	    boolean dominated = false;
+	    for (int j = 0; !dominated && j < options.length; j++) {
+		if (j == i) {
+		    continue;
+		}
+		if (options[j] == options[i]) {
+		    // Keeps the first of equal options.
+		    dominated = j < i;
+		}
+		else {
+		    dominated = forLeft ? le(options[i], options[j]) :
+			le(options[j], options[i]);
+		}
+	    }
+	    if (!dominated) {
+		kept.add(options[i]);
+	    }
+	}
+	return kept.toArray(new GameValue[0]);
+    }
+
+    /** Returns the interned value with the given options. */
+    private static GameValue intern(GameValue[] left, GameValue[] right) {
+	sort(left);
+	sort(right);
+	String key = key(left) + "|" + key(right);
+	GameValue value = INTERNED.get(key);
+	if (value == null) {
+	    value = new GameValue(left, right);
+	    value.id = VALUES.size();
+	    VALUES.add(value);
+	    INTERNED.put(key, value);
+	}
+	return value;
+    }
+
+    private static void sort(GameValue[] options) {
+	for (int i = 1; i < options.length; i++) {
+	    GameValue option = options[i];
+	    int j = i - 1;
+	    while (j >= 0 && options[j].id > option.id) {
+		options[j + 1] = options[j];
+		j--;
+	    }
+	    options[j + 1] = option;
+	}
+    }
+
+    private static String key(GameValue[] options) {
+	StringBuffer buffer = new StringBuffer();
+	for (int i = 0; i < options.length; i++) {
+	    if (i > 0) {
+		buffer.append(',');
+	    }
+	    buffer.append(options[i].id);
+	}
+	return buffer.toString();
+    }
+
+    // ----------------------------------------------------------------
+
+    /** Determines whether this value is a number: every option is a
+     * number and every left option is less than every right option. */
+    public boolean isNumber() {
+	synchronized (GameValue.class) {
+	    for (int i = 0; i < left.length; i++) {
+		if (!left[i].isNumber()) {
+		    return false;
+		}
+	    }
+	    for (int i = 0; i < right.length; i++) {
+		if (!right[i].isNumber()) {
+		    return false;
+		}
+	    }
+	    for (int i = 0; i < left.length; i++) {
+		for (int j = 0; j < right.length; j++) {
+		    if (le(right[j], left[i])) {
+			return false;
+		    }
+		}
+	    }
+	    return true;
+	}
+    }
+
+    /** Returns the value of a number, which is a dyadic rational.
+     * @see #isNumber()
+     */
+    public double toNumber() {
+	if (left.length == 0 && right.length == 0) {
+	    return 0;
+	}
+	if (right.length == 0) {
+	    return left[0].toNumber() + 1;
+	}
+	if (left.length == 0) {
+	    return right[0].toNumber() - 1;
+	}
+	return (left[0].toNumber() + right[0].toNumber()) / 2;
+    }
+
+    /** Returns the size of the nim heap this value equals, or -1 if it is
+     * not a nimber. The nimber <code>*n</code> has the options
+     * <code>0, *, ..., *(n-1)</code> for both players. */
+    public int toNimber() {
+	if (left.length != right.length) {
+	    return -1;
+	}
+	boolean[] heaps = new boolean[left.length];
+	for (int i = 0; i < left.length; i++) {
+	    int heap = left[i].toNimber();
+	    if (left[i] != right[i] || heap < 0 || heap >= heaps.length ||
+		heaps[heap]) {
+		return -1;
+	    }
+	    heaps[heap] = true;
+	}
+	return left.length;
+    }
+
+    /** Returns the value in the usual notation where it has one: numbers
+     * such as <code>-1</code> or <code>3/4</code>, nimbers such as
+     * <code>*</code> or <code>*2</code>, <code>^</code> and <code>v</code>
+     * for up and down, and <code>+-x</code> for a switch between the
+     * numbers <code>x</code> and <code>-x</code>. Any other value is
+     * written as its options, <code>{left|right}</code>.
+     */
+    public String toString() {
+	if (isNumber()) {
+	    return numberToString(toNumber());
+	}
+	int nimber = toNimber();
+	if (nimber >= 0) {
+	    return (nimber == 1) ? "*" : ("*" + nimber);
+	}
+	if (left.length == 1 && right.length == 1) {
+	    if (left[0] == ZERO && right[0].toNimber() == 1) {
+		return "^";
+	    }
+	    if (right[0] == ZERO && left[0].toNimber() == 1) {
+		return "v";
+	    }
+	    if (left[0].isNumber() && right[0] == left[0].negate()) {
+		return "+-" + left[0];
+	    }
+	}
+	StringBuffer buffer = new StringBuffer("{");
+	for (int i = 0; i < left.length; i++) {
+	    buffer.append((i > 0) ? "," : "").append(left[i]);
+	}
+	buffer.append('|');
+	for (int i = 0; i < right.length; i++) {
+	    buffer.append((i > 0) ? "," : "").append(right[i]);
+	}
+	return buffer.append('}').toString();
+    }
+
+    /** Writes a dyadic rational as an integer or a fraction. */
+    private static String numberToString(double number) {
+	long denominator = 1;
+	while (number * denominator != Math.floor(number * denominator)) {
+	    denominator *= 2;
+	}
+	long numerator = (long)(number * denominator);
+	return (denominator == 1) ? String.valueOf(numerator) :
+	    (numerator + "/" + denominator);
+    }
+
+}
@@ -0,0 +1,223 @@
+/* MonteCarloSearch.java
+ * Konane Game System
+ * MIT IEEE IAP Programming Competition 2001
+ */
+
+package konaneEngine;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import konaneCommon.*;
+
+/** A Monte Carlo tree search that uses several threads by root
+ * parallelization.
+
+ * <p>Every thread grows its own {@link konaneEngine.MonteCarloTree} of the
+ * same position with its own random playouts, so the threads share
+ * nothing while they run. When time is up the playouts through each move
+ * from the root are added up over all trees, and the move with the most
+ * is played. Every tree then keeps its subtree for that move for the next
+ * search. The calling thread grows the first tree; the helper threads
+ * are kept between searches until {@link #shutdown()}, or until they
+ * have been idle for a few seconds.</p>
+ */
+public final class MonteCarloSearch {
+
+    /** The usual UCT exploration constant, the square root of 2. */
+    public final static double DEFAULT_EXPLORATION = Math.sqrt(2);
+
+    /** Number of iterations between checks of the clock. */
+    private final static int CHECK_INTERVAL = 64;
+
+    /** Set when the calling thread is interrupted, to stop the helpers. */
+    private volatile boolean stopped;
+
+    private final MonteCarloTree[] trees;
+
+    /** Seconds an idle helper thread is kept. */
+    private final static long KEEP_ALIVE = 5;
+
+    /** Runs the helper trees, or null with a single thread. */
+    private final ExecutorService helpers;
+
+    // Statistics of the last search.
+    private long playouts;
+    private long reused;
+    private long elapsed;
+
+    /** Creates a search with <code>threads</code> threads, counting the
+     * calling thread.
+     * @param exploration the UCT exploration constant.
+     * @param seed the seed of the random playouts.
+     */
+    public MonteCarloSearch(int threads, double exploration, long seed) {
+	if (threads < 1) {
+	    throw new IllegalArgumentException("threads must be at least 1");
+	}
+	trees = new MonteCarloTree[threads];
+	for (int i = 0; i < threads; i++) {
+	    trees[i] = new MonteCarloTree(exploration,
+					  seed + i * 0x9E3779B97F4A7C15L);
+	}
+	helpers = (threads > 1) ? newHelpers(threads - 1) : null;
+    }
+
+    /** Creates the pool of helper threads. Its threads end once they
+     * have been idle for {@link #KEEP_ALIVE} seconds, so a search that is
+     * dropped without {@link #shutdown()} does not keep them, and its
+     * factory is static, so the threads do not keep the search. */
+    private static ExecutorService newHelpers(int count) {
+	ThreadPoolExecutor pool =
+	    new ThreadPoolExecutor(count, count, KEEP_ALIVE, TimeUnit.SECONDS,
+				   new LinkedBlockingQueue<Runnable>(),
+				   new HelperFactory());
+	pool.allowCoreThreadTimeOut(true);
+	return pool;
+    }
+
+    /** Creates the helper threads, as daemon threads. */
+    private final static class HelperFactory implements ThreadFactory {
+	public Thread newThread(Runnable runnable) {
+	    Thread thread = new Thread(runnable, "MonteCarloSearch helper");
+	    thread.setDaemon(true);
+	    return thread;
+	}
+    }
+
+    /** Returns the number of threads. */
+    public int getThreads() {
+	return trees.length;
+    }
+
+    /** Searches a position until a deadline and returns the move with the
+     * most playouts. Interrupting the calling thread ends the search
+     * early.
+     * @param deadline the <code>System.nanoTime()</code> at which to stop.
+     * At least one playout is always run.
+     * @return the move as a packed move, or
+     * {@link konaneCommon.MoveList#NO_MOVE} if <code>side</code> has no
+     * move.
+     */
+    public int search(BoardGrid position, byte side, final long deadline) {
+	long start = System.nanoTime();
+	stopped = false;
+	reused = 0;
+	for (int i = 0; i < trees.length; i++) {
+	    reused += trees[i].setPosition(position, side);
+	}
+	List<Future<?>> running = new ArrayList<Future<?>>();
+	for (int i = 1; i < trees.length; i++) {
+	    final MonteCarloTree tree = trees[i];
+	    running.add(helpers.submit(new Runnable() {
+		    public void run() {
+			grow(tree, deadline);
+		    }
+		}));
+	}
+	trees[0].iterate();
+	grow(trees[0], deadline);
+	// The first tree stops early only if this thread was interrupted;
+	// the helpers must then stop too, and be waited for all the same.
+	boolean interrupted = Thread.interrupted();
+	if (interrupted) {
+	    stopped = true;
+	}
+	for (Future<?> future : running) {
+	    while (true) {
+		try {
+		    future.get();
+		    break;
+		}
+		catch (InterruptedException e) {
+		    interrupted = true;
+		    stopped = true;
+		}
+		catch (ExecutionException e) {
+		    throw new IllegalStateException(e.getCause());
+		}
+	    }
+	}
+	if (interrupted) {
+	    Thread.currentThread().interrupt();
+	}
+	elapsed = System.nanoTime() - start;
+
+	Map<Integer, Long> visits = new HashMap<Integer, Long>();
+	playouts = 0;
+	int best = MoveList.NO_MOVE;
+	long bestVisits = -1;
+	for (int i = 0; i < trees.length; i++) {
+	    MonteCarloTree tree = trees[i];
+	    playouts += tree.getPlayouts();
+	    for (int j = 0; j < tree.getRootMoveCount(); j++) {
+		Integer move = Integer.valueOf(tree.getRootMove(j));
+		Long sum = visits.get(move);
+		long total = ((sum == null) ? 0 : sum.longValue()) +
+		    tree.getRootVisits(j);
+		visits.put(move, Long.valueOf(total));
+		if (total > bestVisits) {
+		    bestVisits = total;
+		    best = move.intValue();
+		}
+	    }
+	}
+	if (best != MoveList.NO_MOVE) {
+	    for (int i = 0; i < trees.length; i++) {
+		trees[i].play(best);
+	    }
+	}
+	return best;
+    }
+
+    /** Grows a tree until the deadline, or until the search is stopped or
+     * the thread interrupted. */
+    private void grow(MonteCarloTree tree, long deadline) {
+	while (System.nanoTime() - deadline < 0 && !stopped &&
+	       !Thread.currentThread().isInterrupted()) {
+	    for (int i = 0; i < CHECK_INTERVAL; i++) {
+		tree.iterate();
+	    }
+	}
+    }
+
+    /** Returns the number of playouts run by all threads in the last
+     * search. */
+    public long getPlayouts() {
+	return playouts;
+    }
+
+    /** Returns the number of playouts kept from earlier searches at the
+     * start of the last search, over all trees. */
+    public long getReused() {
+	return reused;
+    }
+
+    /** Returns the playouts per second of the last search. */
+    public long getPlayoutsPerSecond() {
+	return (long)(playouts * 1e9 / Math.max(1, elapsed));
+    }
+
+    /** Returns the statistics of the last search as a single line. */
+    public String getStats() {
+	return "Stats: playouts = " + playouts + ", playouts/s = " +
+	    getPlayoutsPerSecond() + ", reused = " + reused +
+	    ", threads = " + trees.length;
+    }
+
+    /** Stops the helper threads. The search cannot be used afterwards. */
+    public void shutdown() {
+	if (helpers != null) {
+	    helpers.shutdownNow();
+	}
+    }
+
+}
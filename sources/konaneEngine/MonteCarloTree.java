@@ -0,0 +1,332 @@
+/* MonteCarloTree.java
+ * Konane Game System
+ * MIT IEEE IAP Programming Competition 2001
+ */
+
+package konaneEngine;
+
+import konaneCommon.*;
+
+/** A Monte Carlo search tree grown by the UCT rule.
+
+ * <p>Each iteration walks down the tree from the root, choosing at every
+ * node the child with the highest upper confidence bound
+ * <code>wins / visits + c * sqrt(ln(parent visits) / visits)</code>, adds
+ * one new child where the tree ends, and finishes the game from there
+ * with random moves. The result is credited to every node on the path.
+ * The playout runs on one scratch board with make and unmake and a
+ * reusable move list, so it allocates nothing; only the tree itself
+ * grows.</p>
+
+ * <p>The tree outlives a move. After choosing a move, {@link #play(int)}
+ * makes its subtree the new root. When the next position arrives,
+ * {@link #setPosition(konaneCommon.BoardGrid, byte)} compares it with the
+ * remembered one to find the opponent's reply and descends once more, so
+ * the playouts spent on that reply are kept. If the reply cannot be found
+ * the tree is started afresh.</p>
+
+ * <p>A tree belongs to one thread; {@link konaneEngine.MonteCarloSearch}
+ * runs one per thread.</p>
+ */
+public final class MonteCarloTree {
+
+    /** A node of the tree: a position, reached by a move. */
+    private final static class Node {
+
+	/** The move that leads here, or NO_MOVE at the root. */
+	final int move;
+
+	/** The side to move in this position. */
+	final byte side;
+
+	/** The children added so far. */
+	Node[] children;
+	int childCount;
+
+	/** Moves not yet added as children, or null before the node's
+	 * moves have been generated. */
+	int[] untried;
+	int untriedCount;
+
+	/** Playouts through this node, and those won by the side that made
+	 * {@link #move}. */
+	int visits;
+	double wins;
+
+	Node(int move, byte side) {
+	    this.move = move;
+	    this.side = side;
+	}
+
+	/** Returns the child reached by a move, or null. */
+	Node child(int move) {
+	    for (int i = 0; i < childCount; i++) {
+		if (children[i].move == move) {
+		    return children[i];
+		}
+	    }
+	    return null;
+	}
+
+    }
+
+    /** The exploration constant <code>c</code>. */
+    private final double exploration;
+
+    /** The position at the root, kept in step with the root. */
+    private BoardGrid board;
+
+    private Node root;
+
+    /** The nodes and moves of the current path from the root. */
+    private Node[] path = new Node[64];
+    private int[] undo = new int[64];
+
+    /** Undo records of the moves of the current playout. */
+    private int[] playoutStack = new int[64];
+
+    private final MoveList moves = new MoveList();
+
+    /** State of the random number generator. */
+    private long random;
+
+    /** Playouts run since the last call to {@link #setPosition}, and
+     * playouts kept from earlier moves when it was called. */
+    private long playouts;
+    private long reused;
+
+    /** Creates an empty tree.
+     * @param exploration the exploration constant; the square root of 2
+     * is the classic choice.
+     * @param seed the seed of the random playouts.
+     */
+    public MonteCarloTree(double exploration, long seed) {
+	this.exploration = exploration;
+	this.random = seed | 1;
+    }
+
+    /** Sets the position to search, reusing the part of the tree that
+     * leads to it.
+     * @return the number of playouts kept from earlier searches.
+     */
+    public long setPosition(BoardGrid position, byte side) {
+	playouts = 0;
+	reused = 0;
+	if (root != null && root.side != side &&
+	    board.getWidth() == position.getWidth() &&
+	    board.getHeight() == position.getHeight()) {
+	    int reply = findMove(board, position, root.side);
+	    Node child = (reply == MoveList.NO_MOVE) ? null :
+		root.child(reply);
+	    if (child != null) {
+		board.makeMove(reply);
+		if (board.getHash() == position.getHash()) {
+		    root = child;
+		    reused = root.visits;
+		    return reused;
+		}
+	    }
+	}
+	else if (root != null && root.side == side &&
+		 board.getHash() == position.getHash()) {
+	    reused = root.visits;
+	    return reused;
+	}
+	board = position.copy();
+	root = new Node(MoveList.NO_MOVE, side);
+	return 0;
+    }
+
+    /** Finds the move by which <code>side</code> turned one position into
+     * another, by comparing them square by square: the move empties its
+     * initial square and fills its final square.
+     * @return the packed move, or {@link konaneCommon.MoveList#NO_MOVE} if
+     * the positions do not differ by a legal move of <code>side</code>.
+     */
+    public static int findMove(BoardGrid before, BoardGrid after, byte side) {
+	int initialCol = -1, initialRow = -1, finalCol = -1, finalRow = -1;
+	for (int col = 0; col < before.getWidth(); col++) {
+	    for (int row = 0; row < before.getHeight(); row++) {
+		byte was = before.getTokenAt(col, row);
+		byte is = after.getTokenAt(col, row);
+		if (was == side && is != side) {
+		    if (initialCol >= 0) {
+			return MoveList.NO_MOVE;
+		    }
+		    initialCol = col;
+		    initialRow = row;
+		}
+		else if (was != side && is == side) {
+		    if (finalCol >= 0) {
+			return MoveList.NO_MOVE;
+		    }
+		    finalCol = col;
+		    finalRow = row;
+		}
+	    }
+	}
+	if (initialCol < 0 || finalCol < 0 ||
+	    !before.isLegalMove(initialCol, initialRow, finalCol, finalRow,
+				side)) {
+	    return MoveList.NO_MOVE;
+	}
+	return MoveList.pack(initialCol, initialRow, finalCol, finalRow,
+			     side);
+    }
+
+    /** Runs one iteration: selection, expansion, a random playout and the
+     * update of the path. */
+    public void iterate() {
+	Node node = root;
+	int depth = 0;
+	push(node, MoveList.NO_MOVE, depth);
+	while (true) {
+	    if (node.untried == null) {
+		moves.clear();
+		int count = board.generateMoves(node.side, moves);
+		node.untried = new int[count];
+		for (int i = 0; i < count; i++) {
+		    node.untried[i] = moves.get(i);
+		}
+		node.untriedCount = count;
+		node.children = new Node[count];
+	    }
+	    if (node.untriedCount > 0) {
+		int i = nextInt(node.untriedCount);
+		int move = node.untried[i];
+		node.untried[i] = node.untried[--node.untriedCount];
+		Node child = new Node(move, (byte)~node.side);
+		node.children[node.childCount++] = child;
+		node = child;
+		push(node, board.makeMove(move), ++depth);
+		break;
+	    }
+	    if (node.childCount == 0) {
+		break;
+	    }
+	    node = select(node);
+	    push(node, board.makeMove(node.move), ++depth);
+	}
+	byte winner = playout(node.side);
+	for (int i = depth; i >= 0; i--) {
+	    Node visited = path[i];
+	    visited.visits++;
+	    if (winner != visited.side) {
+		visited.wins++;
+	    }
+	    if (i > 0) {
+		board.unmakeMove(undo[i]);
+	    }
+	}
+	playouts++;
+    }
+
+    /** Records a node of the current path. */
+    private void push(Node node, int move, int depth) {
+	if (depth == path.length) {
+	    Node[] nodes = new Node[depth * 2];
+	    int[] undos = new int[depth * 2];
+	    System.arraycopy(path, 0, nodes, 0, depth);
+	    System.arraycopy(undo, 0, undos, 0, depth);
+	    path = nodes;
+	    undo = undos;
+	}
+	path[depth] = node;
+	undo[depth] = move;
+    }
+
+    /** Returns the child with the highest upper confidence bound. */
+    private Node select(Node node) {
+	double logVisits = Math.log(node.visits);
+	Node best = null;
+	double bestValue = Double.NEGATIVE_INFINITY;
+	for (int i = 0; i < node.childCount; i++) {
+	    Node child = node.children[i];
+	    double value = child.wins / child.visits +
+		exploration * Math.sqrt(logVisits / child.visits);
+	    if (value > bestValue) {
+		bestValue = value;
+		best = child;
+	    }
+	}
+	return best;
+    }
+
+    /** Plays random moves until a side cannot move, then takes them all
+     * back.
+     * @return the side that wins.
+     */
+    private byte playout(byte side) {
+	int made = 0;
+	while (true) {
+	    moves.clear();
+	    int count = board.generateMoves(side, moves);
+	    if (count == 0) {
+		break;
+	    }
+	    if (made == playoutStack.length) {
+		int[] grown = new int[made * 2];
+		System.arraycopy(playoutStack, 0, grown, 0, made);
+		playoutStack = grown;
+	    }
+	    playoutStack[made++] = board.makeMove(moves.get(nextInt(count)));
+	    side = (byte)~side;
+	}
+	while (made > 0) {
+	    board.unmakeMove(playoutStack[--made]);
+	}
+	return (byte)~side;
+    }
+
+    /** Returns a random number from 0 to <code>bound - 1</code>, from a
+     * xorshift generator. */
+    private int nextInt(int bound) {
+	random ^= random << 13;
+	random ^= random >>> 7;
+	random ^= random << 17;
+	return (int)((random >>> 33) % bound);
+    }
+
+    /** Makes the child reached by <code>move</code> the new root, so that
+     * its subtree is kept for the next search. */
+    public void play(int move) {
+	Node child = root.child(move);
+	board.makeMove(move);
+	root = (child != null) ? child :
+	    new Node(MoveList.NO_MOVE, (byte)~root.side);
+    }
+
+    /** Returns the number of moves from the root. */
+    public int getRootMoveCount() {
+	return root.childCount;
+    }
+
+    /** Returns a move from the root, from 0 to
+     * <code>getRootMoveCount() - 1</code>. */
+    public int getRootMove(int index) {
+	return root.children[index].move;
+    }
+
+    /** Returns the number of playouts through a move from the root. */
+    public int getRootVisits(int index) {
+	return root.children[index].visits;
+    }
+
+    /** Returns the fraction of the playouts through a move from the root
+     * that the side to move won. */
+    public double getRootWinRate(int index) {
+	Node child = root.children[index];
+	return (child.visits == 0) ? 0 : child.wins / child.visits;
+    }
+
+    /** Returns the number of playouts run since the position was set. */
+    public long getPlayouts() {
+	return playouts;
+    }
+
+    /** Returns the number of playouts kept when the position was set. */
+    public long getReused() {
+	return reused;
+    }
+
+}
@@ -0,0 +1,206 @@
+/* ParallelSearch.java
+ * Konane Game System
+ * MIT IEEE IAP Programming Competition 2001
+ */
+
+package konaneEngine;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import konaneCommon.*;
+
+/** A search that uses several threads by the Lazy SMP scheme.
+
+ * <p>Every thread runs its own {@link konaneEngine.Search} of the whole
+ * position, and all of them share one
+ * {@link konaneEngine.TranspositionTable}. The threads do not divide the
+ * tree between them: they speed each other up through the table, where
+ * each finds the scores, bounds and best moves the others have already
+ * stored, and half of them search one move deeper than the rest (see
+ * {@link konaneEngine.Search#Search(konaneEngine.TranspositionTable,
+ * int)}), so they tend to explore different parts of the tree. Since the
+ * table is lock-free and nothing else is shared, the number of nodes
+ * searched grows almost linearly with the number of threads.</p>
+
+ * <p>The calling thread runs the main search, which alone obeys the
+ * deadlines. When it finishes the helpers are stopped, and the move of
+ * whichever search completed the deepest iteration is played, the main
+ * search winning ties. The helper threads are kept between searches
+ * until {@link #shutdown()}, or until they have been idle for a few
+ * seconds.</p>
+ */
+public final class ParallelSearch {
+
+    private final TranspositionTable table;
+
+    /** One search per thread; the first runs on the calling thread. */
+    private final Search[] searches;
+
+    /** Seconds an idle helper thread is kept. */
+    private final static long KEEP_ALIVE = 5;
+
+    /** Runs the helper searches, or null with a single thread. */
+    private final ExecutorService helpers;
+
+    /** The search whose move was played last. */
+    private Search chosen;
+
+    /** Creates a search with <code>threads</code> threads, counting the
+     * calling thread. */
+    public ParallelSearch(TranspositionTable table, int threads) {
+	if (threads < 1) {
+	    throw new IllegalArgumentException("threads must be at least 1");
+	}
+	this.table = table;
+	searches = new Search[threads];
+	for (int i = 0; i < threads; i++) {
+	    searches[i] = new Search(table, i);
+	}
+	chosen = searches[0];
+	helpers = (threads > 1) ? newHelpers(threads - 1) : null;
+    }
+
+    /** Creates the pool of helper threads. Its threads end once they
+     * have been idle for {@link #KEEP_ALIVE} seconds, so a search that is
+     * dropped without {@link #shutdown()} does not keep them, and its
+     * factory is static, so the threads do not keep the search. */
+    private static ExecutorService newHelpers(int count) {
+	ThreadPoolExecutor pool =
+	    new ThreadPoolExecutor(count, count, KEEP_ALIVE, TimeUnit.SECONDS,
+				   new LinkedBlockingQueue<Runnable>(),
+				   new HelperFactory());
+	pool.allowCoreThreadTimeOut(true);
+	return pool;
+    }
+
+    /** Creates the helper threads, as daemon threads. */
+    private final static class HelperFactory implements ThreadFactory {
+	public Thread newThread(Runnable runnable) {
+	    Thread thread = new Thread(runnable, "ParallelSearch helper");
+	    thread.setDaemon(true);
+	    return thread;
+	}
+    }
+
+    /** Returns the number of threads. */
+    public int getThreads() {
+	return searches.length;
+    }
+
+    /** Searches a position and returns the best move found. The arguments
+     * are those of {@link konaneEngine.Search#search(
+     * konaneCommon.BoardGrid, byte, int, long, long)}. Interrupting the
+     * calling thread stops every thread of the search.
+     */
+    public int search(final BoardGrid position, final byte side,
+		      final int maxDepth, long softDeadline,
+		      final long hardDeadline) {
+	List<Future<?>> running = new ArrayList<Future<?>>();
+	for (int i = 1; i < searches.length; i++) {
+	    final Search search = searches[i];
+	    running.add(helpers.submit(new Runnable() {
+		    public void run() {
+			search.search(position, side, maxDepth,
+				      Search.NO_DEADLINE, hardDeadline);
+		    }
+		}));
+	}
+	searches[0].search(position, side, maxDepth, softDeadline,
+			   hardDeadline);
+	// A helper that has not started yet would clear the stop flag when
+	// it did, so keep stopping each one until it has finished. If this
+	// thread was interrupted the helpers must still be stopped, so the
+	// interrupt is put back only afterwards.
+	boolean interrupted = false;
+	for (int i = 0; i < running.size(); i++) {
+	    Future<?> future = running.get(i);
+	    while (true) {
+		searches[i + 1].stop();
+		try {
+		    future.get(1, TimeUnit.MILLISECONDS);
+		    break;
+		}
+		catch (TimeoutException e) {
+		    // Not finished yet.
+		}
+		catch (InterruptedException e) {
+		    interrupted = true;
+		}
+		catch (ExecutionException e) {
+		    throw new IllegalStateException(e.getCause());
+		}
+	    }
+	}
+	if (interrupted) {
+	    Thread.currentThread().interrupt();
+	}
+	chosen = searches[0];
+	for (int i = 1; i < searches.length; i++) {
+	    if (searches[i].getDepth() > chosen.getDepth() &&
+		searches[i].getBestMove() != MoveList.NO_MOVE) {
+		chosen = searches[i];
+	    }
+	}
+	return chosen.getBestMove();
+    }
+
+    /** Stops a search running in another thread. The search returns the
+     * best move of its last complete iteration. */
+    public void stop() {
+	searches[0].stop();
+    }
+
+    /** Returns the depth of the search whose move was chosen. */
+    public int getDepth() {
+	return chosen.getDepth();
+    }
+
+    /** Returns the score of the chosen move, for the side to move. */
+    public int getScore() {
+	return chosen.getScore();
+    }
+
+    /** Returns the number of nodes searched by all threads. */
+    public long getNodes() {
+	long nodes = 0;
+	for (int i = 0; i < searches.length; i++) {
+	    nodes += searches[i].getNodes();
+	}
+	return nodes;
+    }
+
+    /** Returns the statistics of the last search in the form tournament
+     * engines print them, with the counts summed over all threads. */
+    public String getStats() {
+	long evaluations = 0, alphaCuts = 0, betaCuts = 0;
+	for (int i = 0; i < searches.length; i++) {
+	    evaluations += searches[i].getEvaluations();
+	    alphaCuts += searches[i].getAlphaCuts();
+	    betaCuts += searches[i].getBetaCuts();
+	}
+	return "Stats: depth = " + getDepth() + ", evaluations = " +
+	    evaluations + ", alpha cuts = " + alphaCuts + ", beta cuts = " +
+	    betaCuts + ", threads = " + searches.length;
+    }
+
+    /** Returns the shared transposition table. */
+    public TranspositionTable getTable() {
+	return table;
+    }
+
+    /** Stops the helper threads. The search cannot be used afterwards. */
+    public void shutdown() {
+	if (helpers != null) {
+	    helpers.shutdownNow();
+	}
+    }
+
+}
@@ -0,0 +1,247 @@
+/* Perft.java
+ * Konane Game System
+ * MIT IEEE IAP Programming Competition 2001
+ */
+
+package konaneEngine;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import konaneCommon.*;
+
+/** Counts the positions at a given depth of the game tree, to test move
+ * generation for correctness and speed.
+
+ * <p>The count of a position at depth <i>n</i> is the number of move
+ * sequences of length <i>n</i> that can be played from it, with the sides
+ * alternating; lines in which a side runs out of moves earlier count
+ * nothing. Any change to move generation that alters these numbers is a
+ * bug, and the rate at which they are produced measures
+ * {@link konaneCommon.BoardGrid#generateMoves(byte,
+ * konaneCommon.MoveList)}, {@link konaneCommon.BoardGrid#makeMove(int)}
+ * and {@link konaneCommon.BoardGrid#unmakeMove(int)}.</p>
+
+ * <p>The subtrees near the root are split across a
+ * <code>ForkJoinPool</code>, each task playing on its own copy of the
+ * board; subtrees of at most {@link #SPLIT_DEPTH} moves are counted by
+ * one thread with make and unmake. Optionally, the counts of subtrees are
+ * kept in a hash table shared by all threads, so that a position reached
+ * by several move orders is counted only once. Like
+ * {@link konaneEngine.TranspositionTable} the table is lock-free: each
+ * entry stores the exclusive or of its key and count next to the count,
+ * and a torn entry reads as a miss.</p>
+
+ * <p>Usage: <code>java konaneEngine.Perft depth [width height [threads
+ * [hashMegabytes]]]</code>. Without a board size every size of the
+ * <code>simulator.Pool</code> tournament, 7 to 11 squares per side, is
+ * counted. Counts start from the opening position with white to move,
+ * and are printed for every depth up to <code>depth</code>.</p>
+ */
+public final class Perft {
+
+    /** Subtrees of this many moves or fewer are not split further. */
+    public final static int SPLIT_DEPTH = 3;
+
+    /** The threads that count subtrees. */
+    private final ForkJoinPool pool;
+
+    /** Key and count words, two per entry, or null without a table. */
+    private final AtomicLongArray table;
+
+    /** Mask that turns a key into an entry index. */
+    private final int mask;
+
+    private final LongAdder hits = new LongAdder();
+
+    /** Creates a counter.
+     * @param threads the number of threads.
+     * @param hashMegabytes the size of the subtree table, or 0 for none.
+     */
+    public Perft(int threads, int hashMegabytes) {
+	pool = new ForkJoinPool(threads);
+	if (hashMegabytes > 0) {
+	    int bits = 1;
+	    while (bits < 28 &&
+		   (16L << (bits + 1)) <= (hashMegabytes * 1048576L)) {
+		bits++;
+	    }
+	    table = new AtomicLongArray(2 << bits);
+	    mask = (1 << bits) - 1;
+	}
+	else {
+	    table = null;
+	    mask = 0;
+	}
+    }
+
+    /** Counts the move sequences of length <code>depth</code> from a
+     * position. The board is not changed. */
+    public long count(BoardGrid board, byte side, int depth) {
+	return pool.invoke(new Subtree(board.copy(), side, depth));
+    }
+
+    /** Returns the number of subtrees whose count was found in the table.
+     */
+    public long getHashHits() {
+	return hits.sum();
+    }
+
+    /** Stops the threads. */
+    public void shutdown() {
+	pool.shutdown();
+    }
+
+    /** Counts a subtree on one thread, with make and unmake.
+     * @param lists one move list for each remaining move.
+     */
+    private long countSequential(BoardGrid board, byte side, int depth,
+				 MoveList[] lists) {
+	MoveList moves = lists[depth];
+	moves.clear();
+	int count = board.generateMoves(side, moves);
+	if (depth == 1) {
+	    return count;
+	}
+	long key = 0;
+	if (table != null) {
+	    key = key(board, side, depth);
+	    long stored = probe(key);
+	    if (stored >= 0) {
+		return stored;
+	    }
+	}
+	long leaves = 0;
+	byte opponent = (byte)~side;
+	for (int i = 0; i < count; i++) {
+	    int undo = board.makeMove(moves.get(i));
+	    leaves += countSequential(board, opponent, depth - 1, lists);
+	    board.unmakeMove(undo);
+	}
+	if (table != null) {
+	    store(key, leaves);
+	}
+	return leaves;
+    }
+
+    /** Returns the table key of a position searched to a depth. */
+    private static long key(BoardGrid board, byte side, int depth) {
+	return board.getHash(side) + depth * 0x9E3779B97F4A7C15L;
+    }
+
+    /** Returns the stored count of a subtree, or -1 if it is not in the
+     * table. */
+    private long probe(long key) {
+	int index = ((int)(key >>> 32) & mask) << 1;
+	long data = table.get(index + 1);
+	if (data != 0 && (table.get(index) ^ data) == key) {
+	    hits.increment();
+	    return data - 1;
+	}
+	return -1;
+    }
+
+    /** Stores the count of a subtree, replacing whatever the entry held.
+     */
+    private void store(long key, long count) {
+	int index = ((int)(key >>> 32) & mask) << 1;
+	long data = count + 1;
+	table.lazySet(index, key ^ data);
+	table.lazySet(index + 1, data);
+    }
+
+    /** A subtree counted by a fork/join task. */
+    private final class Subtree extends RecursiveTask<Long> {
+
+	private final static long serialVersionUID = 1L;
+
+	private final BoardGrid board;
+	private final byte side;
+	private final int depth;
+
+	/** Creates a task that owns <code>board</code>. */
+	Subtree(BoardGrid board, byte side, int depth) {
+	    this.board = board;
+	    this.side = side;
+	    this.depth = depth;
+	}
+
+	protected Long compute() {
+	    if (depth <= 0) {
+		return 1L;
+	    }
+	    if (depth <= SPLIT_DEPTH) {
+		MoveList[] lists = new MoveList[depth + 1];
+		for (int i = 1; i <= depth; i++) {
+		    lists[i] = new MoveList();
+		}
+		return countSequential(board, side, depth, lists);
+	    }
+	    long key = 0;
+	    if (table != null) {
+		key = key(board, side, depth);
+		long stored = probe(key);
+		if (stored >= 0) {
+		    return stored;
+		}
+	    }
+	    MoveList moves = new MoveList();
+	    board.generateMoves(side, moves);
+	    List<Subtree> children = new ArrayList<Subtree>();
+	    for (int i = 0; i < moves.size(); i++) {
+		BoardGrid child = board.copy();
+		child.makeMove(moves.get(i));
+		children.add(new Subtree(child, (byte)~side, depth - 1));
+	    }
+	    long leaves = 0;
+	    for (Subtree child : invokeAll(children)) {
+		leaves += child.join();
+	    }
+	    if (table != null) {
+		store(key, leaves);
+	    }
+	    return leaves;
+	}
+
+    }
+
+    public static void main(String[] args) {
+	if (args.length != 1 && args.length < 3) {
+	    System.err.println("Usage: java konaneEngine.Perft depth " +
+			       "[width height [threads [hashMegabytes]]]");
+	    System.exit(1);
+	}
+	int depth = Integer.parseInt(args[0]);
+	int minWidth = 7, maxWidth = 11, minHeight = 7, maxHeight = 11;
+	if (args.length >= 3) {
+	    minWidth = maxWidth = Integer.parseInt(args[1]);
+	    minHeight = maxHeight = Integer.parseInt(args[2]);
+	}
+	int threads = (args.length > 3) ? Integer.parseInt(args[3]) :
+	    Runtime.getRuntime().availableProcessors();
+	int hash = (args.length > 4) ? Integer.parseInt(args[4]) : 0;
+	for (int width = minWidth; width <= maxWidth; width++) {
+	    for (int height = minHeight; height <= maxHeight; height++) {
+		BoardGrid board = new BoardGrid(width, height);
+		for (int d = 1; d <= depth; d++) {
+		    Perft perft = new Perft(threads, hash);
+		    long start = System.nanoTime();
+		    long leaves = perft.count(board, Konane.WHITE, d);
+		    long nanos = Math.max(1, System.nanoTime() - start);
+		    perft.shutdown();
+		    System.out.println(width + "x" + height + " depth " + d +
+				       ": " + leaves + " leaves in " +
+				       (nanos / 1000000) + " ms, " +
+				       (long)(leaves * 1e9 / nanos) +
+				       " leaves/s" +
+				       ((hash > 0) ? (", " + perft.getHashHits()
+						      + " hash hits") : ""));
+		}
+	    }
+	}
+    }
+
+}
@@ -0,0 +1,66 @@
+/* Region.java
+ * Konane Game System
+ * MIT IEEE IAP Programming Competition 2001
+ */
+
+package konaneEngine;
+
+import konaneCommon.*;
+
+/** A part of a Konane board that can be played independently of the rest.
+
+ * <p>A region holds the tokens of one or more groups of adjacent tokens,
+ * copied onto a board just large enough for every square they could ever
+ * move to. No move inside the region can affect a square of another region,
+ * so the game on the whole board is the sum of the games on its regions.
+ * Regions are found by {@link konaneEngine.RegionAnalyzer#findRegions}.</p>
+ */
+public final class Region {
+
+    /** The tokens of the region, on a board of their own. */
+    private final BoardGrid board;
+
+    /** The position of the region's board on the original board. */
+    private final int col, row;
+
+    /** The number of tokens in the region. */
+    private final int tokens;
+
+    Region(BoardGrid board, int col, int row, int tokens) {
+	this.board = board;
+	this.col = col;
+	this.row = row;
+	this.tokens = tokens;
+    }
+
+    /** Returns the board holding the region's tokens. Square
+     * <code>(0, 0)</code> of this board is square
+     * <code>(getCol(), getRow())</code> of the original board. */
+    public BoardGrid getBoard() {
+	return board;
+    }
+
+    /** Returns the column of the original board at which the region's
+     * board starts. */
+    public int getCol() {
+	return col;
+    }
+
+    /** Returns the row of the original board at which the region's board
+     * starts. */
+    public int getRow() {
+	return row;
+    }
+
+    /** Returns the number of tokens in the region. */
+    public int getTokenCount() {
+	return tokens;
+    }
+
+    /** Returns the region's board, preceded by its position. */
+    public String toString() {
+	return "Region at (" + col + "," + row + ") with " + tokens +
+	    " tokens:\n" + board;
+    }
+
+}
@@ -0,0 +1,367 @@
+/* RegionAnalyzer.java
+ * Konane Game System
+ * MIT IEEE IAP Programming Competition 2001
+ */
+
+package konaneEngine;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Vector;
+import konaneCommon.*;
+
+/** Decides Konane endgames by splitting the board into independent regions
+ * and adding up their combinatorial game values.
+
+ * <p>Late in a game the tokens form separate groups, and most of them can
+ * no longer reach one another. {@link #findRegions(BoardGrid)} finds, for
+ * each group of orthogonally adjacent tokens, every square its tokens
+ * could ever land on, and merges groups whose squares touch until the
+ * remaining regions cannot interact. The value of each region, a
+ * {@link konaneEngine.GameValue}, is found by trying every move in the
+ * region and splitting the result into regions again. Values are cached
+ * under the region's normalized shape: the smallest of the encodings of
+ * its symmetric variants, including the variants with colours exchanged,
+ * whose values are the negatives. A region that recurs anywhere on the
+ * board, or in any later position, is therefore only analyzed once.</p>
+
+ * <p>The sum of the region values decides the position: see
+ * {@link #getWinner(BoardGrid, byte)}. White is the left player and black
+ * the right player of the game values. Analysis is exponential in the size
+ * of a region, so regions with more tokens than a given limit are not
+ * analyzed.</p>
+
+ * <p>A <code>RegionAnalyzer</code> is not thread-safe; use one per
+ * thread.</p>
+ */
+public final class RegionAnalyzer {
+
+    /** The default limit on the number of tokens of a region. */
+    public final static int DEFAULT_MAX_TOKENS = 16;
+
+    /** The directions of a jump, as column and row steps. */
+    private final static int[] DC = { 0, 0, 1, -1 };
+    private final static int[] DR = { 1, -1, 0, 0 };
+
+    /** The largest region, in tokens, that will be analyzed. */
+    private final int maxTokens;
+
+    /** Values of regions by normalized shape. */
+    private final HashMap<String, GameValue> cache =
+	new HashMap<String, GameValue>();
+
+    /** Creates an analyzer for regions of up to
+     * {@link #DEFAULT_MAX_TOKENS} tokens. */
+    public RegionAnalyzer() {
+	this(DEFAULT_MAX_TOKENS);
+    }
+
+    /** Creates an analyzer for regions of up to <code>maxTokens</code>
+     * tokens. */
+    public RegionAnalyzer(int maxTokens) {
+	this.maxTokens = maxTokens;
+    }
+
+    /** Returns the number of region values cached. */
+    public int getCacheSize() {
+	return cache.size();
+    }
+
+    /** Removes every cached region value. */
+    public void clearCache() {
+	cache.clear();
+    }
+
+    /** Splits a board into regions that cannot interact.
+     * @return a vector of {@link konaneEngine.Region}s, one for each
+     * independent part of the board that holds tokens.
+     */
+    public Vector findRegions(BoardGrid board) {
+	int width = board.getWidth();
+	int height = board.getHeight();
+	int cells = width * height;
+
+	// Groups of orthogonally adjacent tokens, merged below.
+	int[] group = new int[cells];
+	int[] parent = new int[cells];
+	int groups = 0;
+	Arrays.fill(group, -1);
+	int[] stack = new int[cells];
+	for (int start = 0; start < cells; start++) {
+	    if (group[start] >= 0 || !isToken(board, start % width,
+					       start / width)) {
+		continue;
+	    }
+	    parent[groups] = groups;
+	    int top = 0;
+	    stack[top++] = start;
+	    group[start] = groups;
+	    while (top > 0) {
+		int cell = stack[--top];
+		int col = cell % width;
+		int row = cell / width;
+		for (int d = 0; d < 4; d++) {
+		    int c = col + DC[d];
+		    int r = row + DR[d];
+		    if (isToken(board, c, r) && group[r * width + c] < 0) {
+			group[r * width + c] = groups;
+			stack[top++] = r * width + c;
+		    }
+		}
+	    }
+	    groups++;
+	}
+
+	// Grows the squares of each group until no group's squares touch
+	// another's. owner[cell] is the root of the group whose squares
+	// include the cell.
+	int[] owner = new int[cells];
+	boolean merged = true;
+	while (merged) {
+	    merged = false;
+	    Arrays.fill(owner, -1);
+	    for (int cell = 0; cell < cells; cell++) {
+		if (group[cell] >= 0) {
+		    owner[cell] = find(parent, group[cell]);
+		}
+	    }
+	    // Adds the square beyond any two squares of a region in a line,
+	    // as long as it is empty: a token on the first could jump a token
+	    // on the second and land there. Each square added is checked
+	    // both as the first and as the second of such a pair.
+	    int top = 0;
+	    for (int cell = 0; cell < cells; cell++) {
+		if (owner[cell] >= 0) {
+		    stack[top++] = cell;
+		}
+	    }
+	    while (top > 0) {
+		int cell = stack[--top];
+		int g = owner[cell];
+		int col = cell % width;
+		int row = cell / width;
+		for (int d = 0; d < 4; d++) {
+		    for (int first = -1; first <= 0; first++) {
+			int c0 = col + first * DC[d], r0 = row + first * DR[d];
+			int c2 = c0 + 2 * DC[d], r2 = r0 + 2 * DR[d];
+			if (board.isValidPosition(c0, r0) &&
+			    board.isValidPosition(c2, r2) &&
+			    owner[r0 * width + c0] == g &&
+			    owner[(r0 + DR[d]) * width + c0 + DC[d]] == g &&
+			    owner[r2 * width + c2] < 0 &&
+			    board.getTokenAt(c2, r2) == Konane.NONE) {
+			    owner[r2 * width + c2] = g;
+			    stack[top++] = r2 * width + c2;
+			}
+		    }
+		}
+	    }
+	    // Merges regions with adjacent squares.
+	    for (int cell = 0; cell < cells; cell++) {
+		if (owner[cell] < 0) {
+		    continue;
+		}
+		int col = cell % width;
+		int row = cell / width;
+		for (int d = 0; d < 4; d++) {
+		    int c = col + DC[d], r = row + DR[d];
+		    if (!board.isValidPosition(c, r) ||
+			owner[r * width + c] < 0) {
+			continue;
+		    }
+		    int a = find(parent, owner[cell]);
+		    int b = find(parent, owner[r * width + c]);
+		    if (a != b) {
+			parent[Math.max(a, b)] = Math.min(a, b);
+			merged = true;
+		    }
+		}
+	    }
+	}
+
+	// Copies each region onto a board the size of its squares.
+	int[] root = new int[groups];
+	int[] minCol = new int[groups], maxCol = new int[groups];
+	int[] minRow = new int[groups], maxRow = new int[groups];
+	int[] tokens = new int[groups];
+	for (int g = 0; g < groups; g++) {
+	    root[g] = find(parent, g);
+	    minCol[g] = width;
+	    minRow[g] = height;
+	    maxCol[g] = maxRow[g] = -1;
+	}
+	for (int cell = 0; cell < cells; cell++) {
+	    int g = owner[cell];
+	    if (g >= 0) {
+		minCol[g] = Math.min(minCol[g], cell % width);
+		maxCol[g] = Math.max(maxCol[g], cell % width);
+		minRow[g] = Math.min(minRow[g], cell / width);
+		maxRow[g] = Math.max(maxRow[g], cell / width);
+	    }
+	    if (group[cell] >= 0) {
+		tokens[root[group[cell]]]++;
+	    }
+	}
+	Vector regions = new Vector();
+	for (int g = 0; g < groups; g++) {
+	    if (root[g] != g) {
+		continue;
+	    }
+	    byte[][] sub = new byte[maxCol[g] - minCol[g] + 1]
+		[maxRow[g] - minRow[g] + 1];
+	    for (int c = 0; c < sub.length; c++) {
+		for (int r = 0; r < sub[c].length; r++) {
+		    int cell = (r + minRow[g]) * width + c + minCol[g];
+		    sub[c][r] = (group[cell] >= 0 && root[group[cell]] == g) ?
+			board.getTokenAt(c + minCol[g], r + minRow[g]) :
+			Konane.NONE;
+		}
+	    }
+	    regions.addElement(new Region(new BoardGrid(sub, sub.length,
+							sub[0].length),
+					  minCol[g], minRow[g], tokens[g]));
+	}
+	return regions;
+    }
+
+    /** Returns the value of a board, the sum of the values of its regions,
+     * or null if a region has more tokens than this analyzer's limit. */
+    public GameValue getValue(BoardGrid board) {
+	Vector regions = findRegions(board);
+	GameValue value = GameValue.ZERO;
+	for (int i = 0; i < regions.size(); i++) {
+	    Region region = (Region)regions.elementAt(i);
+	    if (region.getTokenCount() > maxTokens) {
+		return null;
+	    }
+	    value = value.add(getValue(region));
+	}
+	return value;
+    }
+
+    /** Returns the value of a region, from the cache if a region of the
+     * same shape has been analyzed before. */
+    public GameValue getValue(Region region) {
+	BoardGrid board = region.getBoard();
+	String best = null;
+	int bestTransform = 0;
+	int count = board.getSymmetryCount();
+	for (int t = 0; t < count; t++) {
+	    for (int swap = 0; swap <= BoardGrid.SWAP_COLOURS;
+		 swap += BoardGrid.SWAP_COLOURS) {
+		String key = encode(board, t | swap);
+		if (best == null || key.compareTo(best) < 0) {
+		    best = key;
+		    bestTransform = t | swap;
+		}
+	    }
+	}
+	GameValue value = cache.get(best);
+	if (value == null) {
+	    value = analyze(board.transform(bestTransform));
+	    cache.put(best, value);
+	}
+	return ((bestTransform & BoardGrid.SWAP_COLOURS) != 0) ?
+	    value.negate() : value;
+    }
+
+    /** Determines who wins a position with the given side to move, if
+     * both sides play perfectly.
+     * @return the winning side, or {@link konaneCommon.Konane#NONE} if the
+     * position has a region too large to analyze.
+     */
+    public byte getWinner(BoardGrid board, byte side) {
+	GameValue value = getValue(board);
+	if (value == null) {
+	    return Konane.NONE;
+	}
+	if (side == Konane.WHITE) {
+	    return value.leftWinsMovingFirst() ? Konane.WHITE : Konane.BLACK;
+	}
+	return value.rightWinsMovingFirst() ? Konane.BLACK : Konane.WHITE;
+    }
+
+    /** Finds a move that wins for <code>side</code>, if there is one.
+     * @return a winning packed move, or {@link konaneCommon.MoveList#NO_MOVE}
+     * if the position is lost or too large to analyze.
+     */
+    public int findWinningMove(BoardGrid board, byte side) {
+	MoveList moves = new MoveList();
+	board.generateMoves(side, moves);
+	BoardGrid scratch = board.copy();
+	for (int i = 0; i < moves.size(); i++) {
+	    int undo = scratch.makeMove(moves.get(i));
+	    GameValue value = getValue(scratch);
+	    scratch.unmakeMove(undo);
+	    // The move wins if the opponent, moving next, loses.
+	    if (value != null &&
+		((side == Konane.WHITE) ? !value.rightWinsMovingFirst() :
+		 !value.leftWinsMovingFirst())) {
+		return moves.get(i);
+	    }
+	}
+	return MoveList.NO_MOVE;
+    }
+
+    /** Computes the value of a region from its options. */
+    private GameValue analyze(BoardGrid board) {
+	MoveList moves = new MoveList();
+	board.generateMoves(Konane.WHITE, moves);
+	int whiteMoves = moves.size();
+	board.generateMoves(Konane.BLACK, moves);
+	GameValue[] left = new GameValue[whiteMoves];
+	GameValue[] right = new GameValue[moves.size() - whiteMoves];
+	for (int i = 0; i < moves.size(); i++) {
+	    int undo = board.makeMove(moves.get(i));
+	    GameValue option = getValue(board);
+	    board.unmakeMove(undo);
+	    if (i < whiteMoves) {
+		left[i] = option;
+	    }
+	    else {
+		right[i - whiteMoves] = option;
+	    }
+	}
+	return GameValue.of(left, right);
+    }
+
+    /** Encodes the tokens of a board after a transform, row by row. */
+    private static String encode(BoardGrid board, int transform) {
+	int t = transform & 7;
+	boolean swap = (transform & BoardGrid.SWAP_COLOURS) != 0;
+	boolean transpose = t >= 4;
+	int width = transpose ? board.getHeight() : board.getWidth();
+	int height = transpose ? board.getWidth() : board.getHeight();
+	char[] chars = new char[width * height];
+	for (int c = 0; c < board.getWidth(); c++) {
+	    for (int r = 0; r < board.getHeight(); r++) {
+		byte token = board.getTokenAt(c, r);
+		char ch = '.';
+		if (token == Konane.WHITE || token == Konane.BLACK) {
+		    ch = ((token == Konane.WHITE) != swap) ? 'W' : 'B';
+		}
+		chars[BoardGrid.transformRow(t, c, r, board.getWidth(),
+					     board.getHeight()) * width +
+		      BoardGrid.transformCol(t, c, r, board.getWidth(),
+					     board.getHeight())] = ch;
+	    }
+	}
+	return width + "x" + height + ":" + new String(chars);
+    }
+
+    /** Determines whether a square holds a token. */
+    private static boolean isToken(BoardGrid board, int col, int row) {
+	byte token = board.getTokenAt(col, row);
+	return token == Konane.WHITE || token == Konane.BLACK;
+    }
+
+    /** Finds the root of a group in a union-find forest. */
+    private static int find(int[] parent, int g) {
+	while (parent[g] != g) {
+	    parent[g] = parent[parent[g]];
+	    g = parent[g];
+	}
+	return g;
+    }
+
+}
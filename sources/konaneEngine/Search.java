@@ -0,0 +1,456 @@
+/* Search.java
+ * Konane Game System
+ * MIT IEEE IAP Programming Competition 2001
+ */
+
+package konaneEngine;
+
+import konaneCommon.*;
+
+/** An iterative-deepening alpha-beta search.
+
+ * <p>The search deepens one move at a time, so that it always has the
+ * best move of the last complete iteration to fall back on when its time
+ * runs out. Each iteration is a principal variation search: the first
+ * move of a node is searched with the full window and the others with a
+ * null window around alpha, to be searched again only if they turn out
+ * better. Moves are tried in the order most likely to cut the search
+ * short: the move stored for the position in the
+ * {@link konaneEngine.TranspositionTable}, then the two killer moves that
+ * last caused a cutoff at the same depth, then the rest by their history
+ * score, which grows every time a move causes a cutoff anywhere in the
+ * tree.</p>
+
+ * <p>Positions are scored by mobility, the number of moves the side to
+ * move has less the number its opponent has. A side with no move has
+ * lost; such scores are offset by the distance from the root so that
+ * quicker wins are preferred.</p>
+
+ * <p>A search belongs to one thread, but several searches may share a
+ * transposition table.</p>
+ */
+public final class Search {
+
+    /** The score of a won position at the root. */
+    public final static int WIN = 30000;
+
+    /** The deepest search, in moves. */
+    public final static int MAX_PLY = 100;
+
+    /** A deadline that never passes, for a search that runs until it is
+     * stopped. <code>System.nanoTime()</code> may be negative, so a far
+     * future time cannot be written as a constant. */
+    public final static long NO_DEADLINE = Long.MAX_VALUE;
+
+    /** Number of nodes between checks of the clock. */
+    private final static int CHECK_INTERVAL = 1024;
+
+    private final TranspositionTable table;
+
+    /** The number of this search among those sharing the table. */
+    private final int helper;
+
+    /** The board being searched, owned by the search. */
+    private BoardGrid board;
+
+    /** Move lists and ordering scores, one per ply. */
+    private final MoveList[] lists = new MoveList[MAX_PLY + 1];
+    private final int[][] scores = new int[MAX_PLY + 1][];
+
+    /** Two killer moves per ply. */
+    private final int[][] killers = new int[MAX_PLY + 1][2];
+
+    /** History scores by side, initial square, direction and length. A
+     * jump stays on its row or column, so these identify its final square
+     * with an entry per square for each of the four directions and each
+     * number of tokens jumped, rather than one for every square. */
+    private int[][] history;
+
+    /** Dimensions of the board, and the most tokens a jump can take, for
+     * indexing {@link #history}. */
+    private int width, cells, maxJumps;
+
+    /** The history scores are scaled by 2 to this power relative to the
+     * bonus of a cutoff in the current search; see
+     * {@link #prepareHistory()}. */
+    private int historyShift;
+
+    /** The scale at which {@link #prepareHistory()} brings the history
+     * scores back to their bonuses. */
+    private final static int MAX_HISTORY_SHIFT = 12;
+
+    private long hardDeadline;
+    private volatile boolean stopped;
+    private boolean aborted;
+    private int checkCountdown;
+
+    /** The best move of the iteration in progress. */
+    private int rootMove;
+
+    // Results of the last complete iteration.
+    private int bestMove;
+    private int bestScore;
+    private int completedDepth;
+
+    // Statistics of the current search.
+    private long nodes;
+    private long evaluations;
+    private long alphaCuts;
+    private long betaCuts;
+
+    /** Creates a search that stores positions in <code>table</code>. */
+    public Search(TranspositionTable table) {
+	this(table, 0);
+    }
+
+    /** Creates one of several searches of the same position that share
+     * <code>table</code>, as in {@link konaneEngine.ParallelSearch}.
+     * Searches with an odd <code>helper</code> number start one move
+     * deeper, so that they work ahead of the others and leave results in
+     * the table for them to find.
+     */
+    public Search(TranspositionTable table, int helper) {
+	this.table = table;
+	this.helper = helper;
+	for (int i = 0; i <= MAX_PLY; i++) {
+	    lists[i] = new MoveList();
+	    scores[i] = new int[64];
+	}
+    }
+
+    /** Searches a position and returns the best move found. Interrupting
+     * the searching thread stops the search as the hard deadline does.
+     * @param position the position; it is copied, not changed.
+     * @param side the side to move.
+     * @param maxDepth the deepest iteration to run.
+     * @param softDeadline the <code>System.nanoTime()</code> after which
+     * no new iteration is started, or {@link #NO_DEADLINE}.
+     * @param hardDeadline the <code>System.nanoTime()</code> at which the
+     * iteration in progress is abandoned, or {@link #NO_DEADLINE}. An
+     * iteration of depth one always completes.
+     * @return the best move as a packed move, or
+     * {@link konaneCommon.MoveList#NO_MOVE} if <code>side</code> has no
+     * move.
+     */
+    public int search(BoardGrid position, byte side, int maxDepth,
+		      long softDeadline, long hardDeadline) {
+	board = position.copy();
+	this.hardDeadline = hardDeadline;
+	stopped = false;
+	aborted = false;
+	checkCountdown = CHECK_INTERVAL;
+	nodes = evaluations = alphaCuts = betaCuts = 0;
+	bestMove = MoveList.NO_MOVE;
+	bestScore = 0;
+	completedDepth = 0;
+	prepareHistory();
+	for (int i = 0; i <= MAX_PLY; i++) {
+	    killers[i][0] = killers[i][1] = MoveList.NO_MOVE;
+	}
+	maxDepth = Math.min(maxDepth, MAX_PLY);
+	for (int depth = 1 + (helper & 1); depth <= maxDepth; depth++) {
+	    int score = searchNode(side, depth, 0, -WIN - 1, WIN + 1, true,
+				   depth > 1);
+	    if (aborted) {
+		break;
+	    }
+	    completedDepth = depth;
+	    bestScore = score;
+	    bestMove = rootMove;
+	    if (bestMove == MoveList.NO_MOVE ||
+		Math.abs(score) >= WIN - MAX_PLY ||
+		passed(softDeadline)) {
+		break;
+	    }
+	}
+	return bestMove;
+    }
+
+    /** Returns true if a deadline has passed. */
+    private static boolean passed(long deadline) {
+	return deadline != NO_DEADLINE && System.nanoTime() - deadline >= 0;
+    }
+
+    /** Stops a search running in another thread. The search returns the
+     * best move of its last complete iteration. */
+    public void stop() {
+	stopped = true;
+    }
+
+    /** Clears the history scores when the board size changes, and ages
+     * them otherwise, so that earlier moves still guide the order. Aging
+     * quarters the old scores relative to the new ones by quadrupling the
+     * bonus of a cutoff instead, so the scores themselves are only
+     * scaled down once every few searches. */
+    private void prepareHistory() {
+	if (history == null || width != board.getWidth() ||
+	    cells != board.getWidth() * board.getHeight()) {
+	    width = board.getWidth();
+	    cells = width * board.getHeight();
+	    maxJumps = Math.max(1, Math.max(width, board.getHeight()) / 2);
+	    history = new int[2][cells * 4 * maxJumps];
+	    historyShift = 0;
+	    return;
+	}
+	historyShift += 2;
+	if (historyShift >= MAX_HISTORY_SHIFT) {
+	    for (int s = 0; s < 2; s++) {
+		for (int i = 0; i < history[s].length; i++) {
+		    history[s][i] >>= historyShift;
+		}
+	    }
+	    historyShift = 0;
+	}
+    }
+
+    /** Searches a node with principal variation search.
+     * @param pv whether the node may lie on the principal variation, so
+     * that its window is wider than a null window.
+     * @param abortable whether the clock is checked.
+     * @return the score for <code>side</code>, or 0 if the search was
+     * aborted.
+     */
+    private int searchNode(byte side, int depth, int ply, int alpha,
+			   int beta, boolean pv, boolean abortable) {
+	if (abortable && --checkCountdown <= 0) {
+	    checkCountdown = CHECK_INTERVAL;
+	    if (stopped || passed(hardDeadline) ||
+		Thread.currentThread().isInterrupted()) {
+		aborted = true;
+	    }
+	}
+	if (aborted) {
+	    return 0;
+	}
+	nodes++;
+	MoveList moves = lists[ply];
+	moves.clear();
+	int count = board.generateMoves(side, moves);
+	if (count == 0) {
+	    return ply - WIN;
+	}
+	if (depth <= 0 || ply >= MAX_PLY) {
+	    evaluations++;
+	    return count - board.countMoves((byte)~side);
+	}
+
+	long key = board.getHash(side);
+	long data = table.probe(key);
+	int hashMove = MoveList.NO_MOVE;
+	if (data != 0) {
+	    hashMove = TranspositionTable.move(data);
+	    if (ply > 0 && TranspositionTable.depth(data) >= depth) {
+		int score = fromTable(TranspositionTable.score(data), ply);
+		int bound = TranspositionTable.bound(data);
+		if (bound == TranspositionTable.EXACT ||
+		    (bound == TranspositionTable.LOWER && score >= beta) ||
+		    (bound == TranspositionTable.UPPER && score <= alpha)) {
+		    return score;
+		}
+	    }
+	}
+
+	if (ply == 0 && bestMove != MoveList.NO_MOVE) {
+	    hashMove = bestMove;
+	}
+	int[] order = orderScores(moves, count, ply, side, hashMove);
+	byte opponent = (byte)~side;
+	int originalAlpha = alpha;
+	int best = -WIN - 1;
+	int chosen = MoveList.NO_MOVE;
+	for (int i = 0; i < count; i++) {
+	    pickNext(moves, order, i, count);
+	    int move = moves.get(i);
+	    int undo = board.makeMove(move);
+	    int score;
+	    if (i == 0) {
+		score = -searchNode(opponent, depth - 1, ply + 1, -beta,
+				    -alpha, pv, abortable);
+	    }
+	    else {
+		score = -searchNode(opponent, depth - 1, ply + 1,
+				    -alpha - 1, -alpha, false, abortable);
+		if (score > alpha && score < beta && !aborted) {
+		    score = -searchNode(opponent, depth - 1, ply + 1, -beta,
+					-alpha, true, abortable);
+		}
+	    }
+	    board.unmakeMove(undo);
+	    if (aborted) {
+		return 0;
+	    }
+	    if (score > best) {
+		best = score;
+		chosen = move;
+	    }
+	    if (score > alpha) {
+		alpha = score;
+	    }
+	    if (alpha >= beta) {
+		betaCuts++;
+		rememberCutoff(move, side, depth, ply);
+		break;
+	    }
+	}
+	if (best <= originalAlpha) {
+	    alphaCuts++;
+	}
+	int bound = (best >= beta) ? TranspositionTable.LOWER :
+	    ((best > originalAlpha) ? TranspositionTable.EXACT :
+	     TranspositionTable.UPPER);
+	table.store(key, depth, bound, toTable(best, ply), chosen);
+	if (ply == 0) {
+	    rootMove = chosen;
+	}
+	return best;
+    }
+
+    /** Scores the moves of a node for ordering: the hash move first, then
+     * the killers, then the rest by history. */
+    private int[] orderScores(MoveList moves, int count, int ply, byte side,
+			      int hashMove) {
+	if (scores[ply].length < count) {
+	    scores[ply] = new int[count * 2];
+	}
+	int[] order = scores[ply];
+	int[] sideHistory = history[(side == Konane.WHITE) ? 0 : 1];
+	for (int i = 0; i < count; i++) {
+	    int move = moves.get(i);
+	    if (move == hashMove) {
+		order[i] = Integer.MAX_VALUE;
+	    }
+	    else if (move == killers[ply][0]) {
+		order[i] = Integer.MAX_VALUE - 1;
+	    }
+	    else if (move == killers[ply][1]) {
+		order[i] = Integer.MAX_VALUE - 2;
+	    }
+	    else {
+		order[i] = sideHistory[historyIndex(move)];
+	    }
+	}
+	return order;
+    }
+
+    /** Moves the best remaining move to position <code>i</code>, so that
+     * moves are only sorted as far as the search gets before a cutoff. */
+    private static void pickNext(MoveList moves, int[] order, int i,
+				 int count) {
+	int best = i;
+	for (int j = i + 1; j < count; j++) {
+	    if (order[j] > order[best]) {
+		best = j;
+	    }
+	}
+	if (best != i) {
+	    moves.swap(i, best);
+	    int score = order[i];
+	    order[i] = order[best];
+	    order[best] = score;
+	}
+    }
+
+    /** Records a move that caused a cutoff as a killer and in the
+     * history. */
+    private void rememberCutoff(int move, byte side, int depth, int ply) {
+	if (killers[ply][0] != move) {
+	    killers[ply][1] = killers[ply][0];
+	    killers[ply][0] = move;
+	}
+	int[] sideHistory = history[(side == Konane.WHITE) ? 0 : 1];
+	int index = historyIndex(move);
+	sideHistory[index] += (depth * depth) << historyShift;
+	if (sideHistory[index] > (1 << 28)) {
+	    for (int i = 0; i < sideHistory.length; i++) {
+		sideHistory[i] >>= 1;
+	    }
+	}
+    }
+
+    /** Returns the history slot of a move. */
+    private int historyIndex(int move) {
+	int initialCol = MoveList.initialCol(move);
+	int initialRow = MoveList.initialRow(move);
+	int columns = MoveList.finalCol(move) - initialCol;
+	int rows = MoveList.finalRow(move) - initialRow;
+	int direction, jumps;
+	if (rows == 0) {
+	    direction = (columns > 0) ? 0 : 1;
+	    jumps = Math.abs(columns) / 2;
+	}
+	else {
+	    direction = (rows > 0) ? 2 : 3;
+	    jumps = Math.abs(rows) / 2;
+	}
+	int from = initialRow * width + initialCol;
+	return (from * 4 + direction) * maxJumps + jumps - 1;
+    }
+
+    /** Converts a score to be stored in the table, making win scores
+     * relative to the position rather than the root. */
+    private static int toTable(int score, int ply) {
+	if (score >= WIN - MAX_PLY) {
+	    return score + ply;
+	}
+	if (score <= MAX_PLY - WIN) {
+	    return score - ply;
+	}
+	return score;
+    }
+
+    /** Converts a score read from the table back to the root's scale. */
+    private static int fromTable(int score, int ply) {
+	if (score >= WIN - MAX_PLY) {
+	    return score - ply;
+	}
+	if (score <= MAX_PLY - WIN) {
+	    return score + ply;
+	}
+	return score;
+    }
+
+    /** Returns the best move of the last complete iteration. */
+    public int getBestMove() {
+	return bestMove;
+    }
+
+    /** Returns the score of the last complete iteration, for the side to
+     * move. */
+    public int getScore() {
+	return bestScore;
+    }
+
+    /** Returns the depth of the last complete iteration. */
+    public int getDepth() {
+	return completedDepth;
+    }
+
+    /** Returns the number of nodes searched. */
+    public long getNodes() {
+	return nodes;
+    }
+
+    /** Returns the number of positions scored by the evaluation. */
+    public long getEvaluations() {
+	return evaluations;
+    }
+
+    /** Returns the number of nodes where no move beat alpha. */
+    public long getAlphaCuts() {
+	return alphaCuts;
+    }
+
+    /** Returns the number of nodes cut off by a move reaching beta. */
+    public long getBetaCuts() {
+	return betaCuts;
+    }
+
+    /** Returns the statistics of the last search in the form tournament
+     * engines print them. */
+    public String getStats() {
+	return "Stats: depth = " + completedDepth + ", evaluations = " +
+	    evaluations + ", alpha cuts = " + alphaCuts + ", beta cuts = " +
+	    betaCuts;
+    }
+
+}
@@ -0,0 +1,354 @@
+/* TablebaseGenerator.java
+ * Konane Game System
+ * MIT IEEE IAP Programming Competition 2001
+ */
+
+package konaneEngine;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import konaneCommon.*;
+
+/** Builds a {@link konaneCommon.Tablebase} by retrograde analysis.
+
+ * <p>Every board up to the given width, height and number of squares is
+ * covered. Tokens in Konane never change the colour of square they stand
+ * on, so a position on a board is just the set of occupied squares, and
+ * the generator enumerates all of them, reachable from a real game or not.
+ * A move always removes at least one token, so the positions are solved in
+ * layers by number of tokens, starting from the empty board: every move
+ * from a position leads into a layer that is already in the table.</p>
+
+ * <p>Each layer is split into chunks of positions that are solved in
+ * parallel, one chunk per task, reading only the finished layers of the
+ * table. Only one position of each symmetry class is solved. The results
+ * are then stored by a single thread, and the table is written to disk
+ * and marked with the number of complete layers. Generation into an
+ * existing file of the same dimensions therefore resumes after the last
+ * complete layer.</p>
+
+ * <p>Usage: <code>java konaneEngine.TablebaseGenerator maxWidth maxHeight
+ * [maxCells [file [threads]]]</code>. On one core a 4x4 table takes a
+ * few seconds and a table of boards up to 20 squares about ten. Covering
+ * 5x5 boards enumerates 2<sup>25</sup> positions for that board alone
+ * and needs a 512 megabyte file.</p>
+ */
+public final class TablebaseGenerator {
+
+    /** Number of consecutive occupancy masks solved by one task. */
+    private final static int CHUNK = 1 << 15;
+
+    private final int maxWidth, maxHeight, maxCells, threads;
+
+    /** The boards covered by the table. */
+    private final List<Shape> shapes = new ArrayList<Shape>();
+
+    /** Creates a generator for every board of at most the given width,
+     * height and number of squares.
+     * @param threads the number of threads that solve positions.
+     */
+    public TablebaseGenerator(int maxWidth, int maxHeight, int maxCells,
+			      int threads) {
+	if (maxWidth < 1 || maxHeight < 1 || maxCells < 1 ||
+	    maxCells > 30 || threads < 1) {
+	    throw new IllegalArgumentException("bad tablebase dimensions");
+	}
+	this.maxWidth = maxWidth;
+	this.maxHeight = maxHeight;
+	this.maxCells = Math.min(maxCells, maxWidth * maxHeight);
+	this.threads = threads;
+	for (int width = 1; width <= maxWidth; width++) {
+	    for (int height = 1; height <= maxHeight; height++) {
+		if (width * height <= this.maxCells) {
+		    shapes.add(new Shape(width, height));
+		}
+	    }
+	}
+    }
+
+    /** Returns the base 2 logarithm of a number of slots that holds every
+     * position with room to spare. */
+    public int getSlotBits() {
+	double entries = 0;
+	for (Shape shape : shapes) {
+	    entries += 2 * Math.pow(2, shape.cells) / shape.symmetries;
+	}
+	int bits = 10;
+	while (bits < Tablebase.MAX_SLOT_BITS &&
+	       (1L << bits) < entries * 2.5) {
+	    bits++;
+	}
+	if ((1L << bits) < entries * 1.5) {
+	    throw new IllegalArgumentException("tablebase would be too " +
+					       "large");
+	}
+	return bits;
+    }
+
+    /** Generates the table into a file, resuming an earlier generation of
+     * the same table if the file exists.
+     * @exception IOException if the file cannot be written, or holds a
+     * table of other dimensions.
+     */
+    public Tablebase generate(File file)
+	throws IOException, InterruptedException {
+	Tablebase table;
+	if (file.exists()) {
+	    table = new Tablebase(file, true);
+	    if (table.getMaxWidth() != maxWidth ||
+		table.getMaxHeight() != maxHeight ||
+		table.getMaxCells() != maxCells) {
+		throw new IOException(file + " holds a table of other " +
+				      "dimensions");
+	    }
+	}
+	else {
+	    table = Tablebase.create(file, maxWidth, maxHeight, maxCells,
+				     getSlotBits());
+	}
+	ExecutorService pool = Executors.newFixedThreadPool(threads);
+	try {
+	    for (int layer = table.getCompletedLayers(); layer <= maxCells;
+		 layer++) {
+		long start = System.currentTimeMillis();
+		int solved = generateLayer(table, layer, pool);
+		table.setCompletedLayers(layer + 1);
+		if (Konane.verbose) {
+		    System.out.println("layer " + layer + ": " + solved +
+				       " positions in " +
+				       (System.currentTimeMillis() - start) +
+				       " ms, " + table.getEntryCount() +
+				       " stored");
+		}
+	    }
+	}
+	finally {
+	    pool.shutdownNow();
+	}
+	return table;
+    }
+
+    /** Solves and stores every position with <code>layer</code> tokens.
+     * @return the number of positions solved.
+     */
+    private int generateLayer(final Tablebase table, final int layer,
+			      ExecutorService pool)
+	throws InterruptedException {
+	List<Callable<long[]>> tasks = new ArrayList<Callable<long[]>>();
+	for (final Shape shape : shapes) {
+	    if (shape.cells < layer) {
+		continue;
+	    }
+	    long masks = 1L << shape.cells;
+	    for (long from = 0; from < masks; from += CHUNK) {
+		final int first = (int)from;
+		final int last = (int)Math.min(masks, from + CHUNK);
+		tasks.add(new Callable<long[]>() {
+			public long[] call() {
+			    return solve(table, shape, layer, first, last);
+			}
+		    });
+	    }
+	}
+	int solved = 0;
+	for (Future<long[]> future : pool.invokeAll(tasks)) {
+	    long[] results;
+	    try {
+		results = future.get();
+	    }
+	    catch (ExecutionException e) {
+		if (e.getCause() instanceof RuntimeException) {
+		    throw (RuntimeException)e.getCause();
+		}
+		throw new IllegalStateException(e.getCause());
+	    }
+	    for (int i = 1; i < results[0]; i += 2) {
+		table.put(results[i], results[i + 1]);
+		solved++;
+	    }
+	}
+	return solved;
+    }
+
+    /** Solves the positions of a layer whose occupancy masks lie in
+     * <code>[first, last)</code>.
+     * @return the number of longs used followed by the canonical hash and
+     * data word of each position solved.
+     */
+    private static long[] solve(Tablebase table, Shape shape, int layer,
+				int first, int last) {
+	long[] results = new long[33];
+	int used = 1;
+	BoardGrid board = new BoardGrid(new byte[shape.width][shape.height],
+					shape.width, shape.height);
+	MoveList moves = new MoveList();
+	for (int mask = first; mask < last; mask++) {
+	    if (Integer.bitCount(mask) != layer) {
+		continue;
+	    }
+	    shape.fill(board, mask);
+	    for (int s = 0; s < 2; s++) {
+		byte side = (s == 0) ? Konane.WHITE : Konane.BLACK;
+		if (!shape.isRepresentative(mask, s)) {
+		    continue;
+		}
+		if (used + 2 > results.length) {
+		    long[] grown = new long[results.length * 2];
+		    System.arraycopy(results, 0, grown, 0, used);
+		    results = grown;
+		}
+		results[used++] = board.getCanonicalHash(side);
+		results[used++] = solve(table, board, side, moves);
+	    }
+	}
+	results[0] = used;
+	return results;
+    }
+
+    /** Solves one position from the records of the positions its moves
+     * lead to.
+     * @return the position's data word.
+     */
+    private static long solve(Tablebase table, BoardGrid board, byte side,
+			      MoveList moves) {
+	byte opponent = (byte)~side;
+	moves.clear();
+	board.generateMoves(side, moves);
+	boolean win = false;
+	int plies = 0;
+	int best = MoveList.NO_MOVE;
+	for (int i = 0; i < moves.size(); i++) {
+	    int move = moves.get(i);
+	    int undo = board.makeMove(move);
+	    long child = table.probe(board.getCanonicalHash(opponent));
+	    board.unmakeMove(undo);
+	    if (child == 0) {
+		throw new IllegalStateException("position missing after " +
+						MoveList.toString(move) +
+						" on\n" + board);
+	    }
+	    int length = Tablebase.plies(child) + 1;
+	    if (!Tablebase.isWin(child)) {
+		if (!win || length < plies) {
+		    win = true;
+		    plies = length;
+		    best = move;
+		}
+	    }
+	    else if (!win && length > plies) {
+		plies = length;
+		best = move;
+	    }
+	}
+	if (best != MoveList.NO_MOVE) {
+	    best = MoveList.pack(board.toCanonical(MoveList.toMove(best),
+				 board.getCanonicalTransform(side)));
+	}
+	return Tablebase.encode(win, plies, best);
+    }
+
+    /** The squares of one board size and how its symmetries permute them.
+     * Square <code>(col, row)</code> is bit <code>row * width + col</code>
+     * of an occupancy mask, and holds a white token if
+     * <code>col + row</code> is even, as on the starting board. */
+    private final static class Shape {
+
+	final int width, height, cells, symmetries;
+
+	/** The square each square is mapped to by each transform. */
+	final int[][] permutation;
+
+	/** For each transform, 1 if it maps the squares of white tokens to
+	 * those of black tokens, so that the colours must be swapped to
+	 * stay within the enumerated positions. */
+	final int[] flip;
+
+	Shape(int width, int height) {
+	    this.width = width;
+	    this.height = height;
+	    this.cells = width * height;
+	    this.symmetries = (width == height) ? 8 : 4;
+	    permutation = new int[symmetries][cells];
+	    flip = new int[symmetries];
+	    for (int t = 0; t < symmetries; t++) {
+		for (int cell = 0; cell < cells; cell++) {
+		    int col = cell % width;
+		    int row = cell / width;
+		    permutation[t][cell] =
+			BoardGrid.transformRow(t, col, row, width, height) *
+			width +
+			BoardGrid.transformCol(t, col, row, width, height);
+		}
+		flip[t] = (BoardGrid.transformCol(t, 0, 0, width, height) +
+			   BoardGrid.transformRow(t, 0, 0, width, height)) & 1;
+	    }
+	}
+
+	/** Sets up the board for an occupancy mask. */
+	void fill(BoardGrid board, int mask) {
+	    for (int cell = 0; cell < cells; cell++) {
+		int col = cell % width;
+		int row = cell / width;
+		if ((mask & (1 << cell)) == 0) {
+		    board.tokens[col][row] = Konane.NONE;
+		}
+		else {
+		    board.tokens[col][row] = (((col + row) & 1) == 0) ?
+			Konane.WHITE : Konane.BLACK;
+		}
+	    }
+	    board.resync();
+	}
+
+	/** Determines whether a position is the one solved for its symmetry
+	 * class: the one whose mask, followed by the side to move, is
+	 * least among the enumerated positions of the class.
+	 * @param side 0 for white to move, 1 for black.
+	 */
+	boolean isRepresentative(int mask, int side) {
+	    long own = ((long)mask << 1) | side;
+	    for (int t = 1; t < symmetries; t++) {
+		long other = 0;
+		for (int bits = mask; bits != 0; bits &= bits - 1) {
+		    other |= 1L << permutation[t]
+			[Integer.numberOfTrailingZeros(bits)];
+		}
+		if (((other << 1) | (side ^ flip[t])) < own) {
+		    return false;
+		}
+	    }
+	    return true;
+	}
+
+    }
+
+    public static void main(String[] args)
+	throws IOException, InterruptedException {
+	if (args.length < 2) {
+	    System.err.println("Usage: java konaneEngine.TablebaseGenerator " +
+			       "maxWidth maxHeight [maxCells [file " +
+			       "[threads]]]");
+	    System.exit(1);
+	}
+	int maxWidth = Integer.parseInt(args[0]);
+	int maxHeight = Integer.parseInt(args[1]);
+	int maxCells = (args.length > 2) ? Integer.parseInt(args[2]) :
+	    maxWidth * maxHeight;
+	File file = new File((args.length > 3) ? args[3] : "konane.ktb");
+	int threads = (args.length > 4) ? Integer.parseInt(args[4]) :
+	    Runtime.getRuntime().availableProcessors();
+	Tablebase table = new TablebaseGenerator(maxWidth, maxHeight,
+						 maxCells, threads)
+	    .generate(file);
+	System.out.println(file + ": " + table.getEntryCount() +
+			   " positions in " + table.size() + " slots");
+    }
+
+}
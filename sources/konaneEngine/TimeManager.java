@@ -0,0 +1,82 @@
+/* TimeManager.java
+ * Konane Game System
+ * MIT IEEE IAP Programming Competition 2001
+ */
+
+package konaneEngine;
+
+import konaneCommon.*;
+
+/** Divides a player's remaining time among its remaining moves.
+
+ * <p>{@link konaneCommon.Player#makeMove(konaneCommon.BoardGrid, long)}
+ * receives the time left for the whole game. The time manager estimates
+ * how many moves the player still has to make and gives the current move
+ * an equal share of the time, less a reserve for the simulator's own
+ * overhead. A search works to two deadlines derived from that share: it
+ * starts no new iteration after the soft deadline, and abandons the
+ * iteration in progress at the hard deadline. The hard deadline is never
+ * more than a third of the remaining time away, so a player that follows
+ * it cannot run out of time however wrong the estimate is.</p>
+ */
+public final class TimeManager {
+
+    /** Milliseconds held back from every move for the work done around
+     * the search, such as copying the board and returning the move. */
+    public final static long RESERVE = 50;
+
+    /** The least number of own moves assumed to be left in a game. */
+    public final static int MIN_MOVES = 4;
+
+    private final long start;
+    private final long budget;
+    private final long softDeadline;
+    private final long hardDeadline;
+
+    /** Plans the time for a move, starting now.
+     * @param board the position to move in.
+     * @param allowedTime the milliseconds left for the rest of the game.
+     */
+    public TimeManager(BoardGrid board, long allowedTime) {
+	start = System.nanoTime();
+	long usable = Math.max(0, allowedTime - RESERVE);
+	long share = usable / expectedMoves(board);
+	budget = Math.min(share, usable / 3);
+	softDeadline = start + budget * 1000000L / 2;
+	hardDeadline = start + budget * 1000000L;
+    }
+
+    /** Estimates how many more moves one player will make on a board.
+     * Every move removes at least one token, and in practice a game ends
+     * with about a third of the board still full: each player makes
+     * roughly one move for every four tokens on the board.
+     */
+    public static int expectedMoves(BoardGrid board) {
+	int tokens = board.getWidth() * board.getHeight() -
+	    board.getEmptyCount();
+	return Math.max(MIN_MOVES, tokens / 4);
+    }
+
+    /** Returns the milliseconds given to this move. */
+    public long getBudget() {
+	return budget;
+    }
+
+    /** Returns the <code>System.nanoTime()</code> after which no new
+     * iteration should be started. */
+    public long getSoftDeadline() {
+	return softDeadline;
+    }
+
+    /** Returns the <code>System.nanoTime()</code> at which the search
+     * must stop. */
+    public long getHardDeadline() {
+	return hardDeadline;
+    }
+
+    /** Returns the milliseconds spent since the move was planned. */
+    public long getElapsed() {
+	return (System.nanoTime() - start) / 1000000L;
+    }
+
+}
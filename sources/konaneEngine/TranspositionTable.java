@@ -0,0 +1,266 @@
+/* TranspositionTable.java
+ * Konane Game System
+ * MIT IEEE IAP Programming Competition 2001
+ */
+
+package konaneEngine;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import konaneCommon.*;
+
+/** A fixed-size transposition table that many search threads can share
+ * without locking.
+
+ * <p>Each entry is keyed by a position hash such as
+ * {@link konaneCommon.BoardGrid#getHash(byte)} and records the search
+ * depth, the kind of bound, the score and the best move found for the
+ * position. All of that is packed into one <code>long</code> of data,
+ * which is stored next to the exclusive or of the key and the data. A
+ * reader accepts an entry only if the two words combine back to the key it
+ * is looking for, so an entry torn by two threads writing the same slot at
+ * once is rejected as a miss instead of being locked against. Both words
+ * are kept in an <code>AtomicLongArray</code>, which guarantees that each
+ * <code>long</code> is read and written as a whole.</p>
+
+ * <p>When two positions map to the same slot the replacement policy
+ * decides which one is kept: {@link #ALWAYS_REPLACE} keeps the newest, and
+ * {@link #DEPTH_PREFERRED} keeps the deeper search unless the stored entry
+ * is left over from an earlier search (see {@link #newSearch()}).</p>
+ */
+public final class TranspositionTable {
+
+    /** Bound type of a score that is at most the true value. */
+    public final static int UPPER = 1;
+
+    /** Bound type of a score that is at least the true value. */
+    public final static int LOWER = 2;
+
+    /** Bound type of an exact score. */
+    public final static int EXACT = 3;
+
+    /** Replacement policy that keeps the deeper of two colliding entries
+     * from the same search. */
+    public final static int DEPTH_PREFERRED = 0;
+
+    /** Replacement policy that always keeps the newest entry. */
+    public final static int ALWAYS_REPLACE = 1;
+
+    /** Largest score that can be stored; larger scores are clamped. */
+    public final static int MAX_SCORE = 32767;
+
+    /** Largest depth that can be stored; deeper searches are clamped. */
+    public final static int MAX_DEPTH = 255;
+
+    /** The largest number of bits of a table: each entry takes two longs,
+     * and 2<sup>30</sup> entries would need more than the largest
+     * array. */
+    public final static int MAX_BITS = 29;
+
+    // Layout of the data word: move in bits 0-28, depth in bits 29-36,
+    // bound in bits 37-38, score in bits 39-54 and generation in 55-62.
+    private final static int MOVE_BITS = 29;
+    private final static long MOVE_MASK = (1L << MOVE_BITS) - 1;
+    private final static int DEPTH_SHIFT = 29;
+    private final static int BOUND_SHIFT = 37;
+    private final static int SCORE_SHIFT = 39;
+    private final static int GENERATION_SHIFT = 55;
+
+    /** Key and data words, two per entry. */
+    private final AtomicLongArray slots;
+
+    /** Mask that turns a key into an entry index. */
+    private final int mask;
+
+    /** The replacement policy. */
+    private final int policy;
+
+    /** Generation of the current search, stored with each entry. */
+    private volatile int generation;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder collisions = new LongAdder();
+    private final LongAdder stores = new LongAdder();
+
+    /** Creates a table with <code>2<sup>bits</sup></code> entries of 16
+     * bytes each.
+     * @param bits the base 2 logarithm of the number of entries, from 1
+     * to {@link #MAX_BITS}.
+     * @param policy {@link #DEPTH_PREFERRED} or {@link #ALWAYS_REPLACE}.
+     */
+    public TranspositionTable(int bits, int policy) {
+	if (bits < 1 || bits > MAX_BITS) {
+	    throw new IllegalArgumentException("bits must be from 1 to " +
+					       MAX_BITS);
+	}
+	if (policy != DEPTH_PREFERRED && policy != ALWAYS_REPLACE) {
+	    throw new IllegalArgumentException("unknown policy " + policy);
+	}
+	this.slots = new AtomicLongArray(2 << bits);
+	this.mask = (1 << bits) - 1;
+	this.policy = policy;
+    }
+
+    /** Creates a table that uses at most <code>megabytes</code> of
+     * memory. */
+    public static TranspositionTable ofMegabytes(int megabytes, int policy) {
+	int bits = 1;
+	while (bits < MAX_BITS && (16L << (bits + 1)) <= (megabytes * 1048576L)) {
+	    bits++;
+	}
+	return new TranspositionTable(bits, policy);
+    }
+
+    /** Returns the number of entries in the table. */
+    public int size() {
+	return mask + 1;
+    }
+
+    /** Returns the replacement policy. */
+    public int getPolicy() {
+	return policy;
+    }
+
+    /** Starts a new search. Entries stored by earlier searches are
+     * replaced in preference to those of the current one. */
+    public void newSearch() {
+	generation = (generation + 1) & 0xFF;
+    }
+
+    /** Removes every entry and resets the counters. Must not be called
+     * while other threads use the table. */
+    public void clear() {
+	for (int i = 0; i < slots.length(); i++) {
+	    slots.set(i, 0);
+	}
+	hits.reset();
+	misses.reset();
+	collisions.reset();
+	stores.reset();
+    }
+
+    /** Looks up a position.
+     * @param key the position hash.
+     * @return the entry's data word, to be decoded with {@link #depth},
+     * {@link #bound}, {@link #score} and {@link #move}, or 0 if the
+     * position is not in the table.
+     */
+    public long probe(long key) {
+	int index = ((int)key & mask) << 1;
+	long data = slots.get(index + 1);
+	long check = slots.get(index);
+	if (data != 0 && (check ^ data) == key) {
+	    hits.increment();
+	    return data;
+	}
+	if (data != 0) {
+	    collisions.increment();
+	}
+	misses.increment();
+	return 0;
+    }
+
+    /** Stores the result of searching a position, subject to the
+     * replacement policy.
+     * @param key the position hash.
+     * @param depth the remaining search depth of the result.
+     * @param bound {@link #UPPER}, {@link #LOWER} or {@link #EXACT}.
+     * @param score the score, clamped to <code>[-MAX_SCORE,
+     * MAX_SCORE]</code>.
+     * @param move the best move as a packed move, or
+     * {@link konaneCommon.MoveList#NO_MOVE}.
+     */
+    public void store(long key, int depth, int bound, int score, int move) {
+	int index = ((int)key & mask) << 1;
+	int generation = this.generation;
+	if (policy == DEPTH_PREFERRED) {
+	    long old = slots.get(index + 1);
+	    if (old != 0 && depth(old) > depth &&
+		generation(old) == generation &&
+		(slots.get(index) ^ old) != key) {
+		return;
+	    }
+	}
+	if (depth < 0) {
+	    depth = 0;
+	}
+	else if (depth > MAX_DEPTH) {
+	    depth = MAX_DEPTH;
+	}
+	if (score > MAX_SCORE) {
+	    score = MAX_SCORE;
+	}
+	else if (score < -MAX_SCORE) {
+	    score = -MAX_SCORE;
+	}
+	long data = ((move < 0) ? MOVE_MASK : (move & MOVE_MASK)) |
+	    ((long)depth << DEPTH_SHIFT) |
+	    ((long)(bound & 3) << BOUND_SHIFT) |
+	    ((long)(score & 0xFFFF) << SCORE_SHIFT) |
+	    ((long)generation << GENERATION_SHIFT);
+	slots.lazySet(index, key ^ data);
+	slots.lazySet(index + 1, data);
+	stores.increment();
+    }
+
+    /** Returns the search depth of an entry's data word. */
+    public static int depth(long data) {
+	return (int)(data >>> DEPTH_SHIFT) & 0xFF;
+    }
+
+    /** Returns the bound type of an entry's data word. */
+    public static int bound(long data) {
+	return (int)(data >>> BOUND_SHIFT) & 3;
+    }
+
+    /** Returns the score of an entry's data word. */
+    public static int score(long data) {
+	return (short)(data >>> SCORE_SHIFT);
+    }
+
+    /** Returns the best move of an entry's data word, or
+     * {@link konaneCommon.MoveList#NO_MOVE} if none was stored. */
+    public static int move(long data) {
+	long move = data & MOVE_MASK;
+	return (move == MOVE_MASK) ? MoveList.NO_MOVE : (int)move;
+    }
+
+    /** Returns the generation of an entry's data word. */
+    private static int generation(long data) {
+	return (int)(data >>> GENERATION_SHIFT) & 0xFF;
+    }
+
+    /** Returns the number of probes that found their position. */
+    public long getHits() {
+	return hits.sum();
+    }
+
+    /** Returns the number of probes that did not find their position. */
+    public long getMisses() {
+	return misses.sum();
+    }
+
+    /** Returns the number of misses that found another position, or a torn
+     * entry, in the slot. */
+    public long getCollisions() {
+	return collisions.sum();
+    }
+
+    /** Returns the number of entries written. */
+    public long getStores() {
+	return stores.sum();
+    }
+
+    /** Returns the counters as a single line of text. */
+    public String toString() {
+	long hits = getHits();
+	long probes = hits + getMisses();
+	return "TT: entries = " + size() + ", probes = " + probes +
+	    ", hits = " + hits + ", collisions = " + getCollisions() +
+	    ", stores = " + getStores() +
+	    ((probes > 0) ? (", hit rate = " + (100 * hits / probes) + "%")
+	     : "");
+    }
+
+}
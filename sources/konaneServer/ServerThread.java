@@ -565,11 +565,12 @@ final class ServerThread extends commonThread.ClientThread {
 		}
 		if (recvBuffer[0] == Konane.BEGIN_TURN_ACK) {
 		    String temp = new String(recvBuffer, 5, count - 5);
-		    Move tempMove = new Move((int)recvBuffer[1],
-					     (int)recvBuffer[2],
-					     (int)recvBuffer[3],
-					     (int)recvBuffer[4],
-					     Konane.WHITE, temp);
+		    Move tempMove =
+			Move.of(KonaneServer.boardGrid.getWidth(),
+				KonaneServer.boardGrid.getHeight(),
+				(int)recvBuffer[1], (int)recvBuffer[2],
+				(int)recvBuffer[3], (int)recvBuffer[4],
+				Konane.WHITE, temp);
 		    print("Received: " + tempMove.toString());
 		    if (tempMove.isErrorMove() || tempMove.isForfeitMove()) {
 			if (tempMove.isErrorMove()) {
@@ -584,7 +585,7 @@ final class ServerThread extends commonThread.ClientThread {
 		    }
 		    else {
 			KonaneServer.boardGrid.makeMove(tempMove);
-			if (KonaneServer.boardGrid.getAllMoves(Konane.BLACK).size() == 0) {
+			if (!KonaneServer.boardGrid.hasAnyMove(Konane.BLACK)) {
 			    print("WHITE won.");
 			    won = Konane.WHITE;
 			    break;
@@ -615,11 +616,12 @@ final class ServerThread extends commonThread.ClientThread {
 		}
 		if (recvBuffer[0] == Konane.BEGIN_TURN_ACK) {
 		    String temp = new String(recvBuffer, 5, count - 5);
-		    Move tempMove = new Move((int)recvBuffer[1],
-					     (int)recvBuffer[2],
-					     (int)recvBuffer[3],
-					     (int)recvBuffer[4],
-					     Konane.BLACK, "");
+		    Move tempMove =
+			Move.of(KonaneServer.boardGrid.getWidth(),
+				KonaneServer.boardGrid.getHeight(),
+				(int)recvBuffer[1], (int)recvBuffer[2],
+				(int)recvBuffer[3], (int)recvBuffer[4],
+				Konane.BLACK, "");
 		    print("Received: " + tempMove.toString());
 		    if (tempMove.isErrorMove() || tempMove.isForfeitMove()) {
 			if (tempMove.isErrorMove()) {
@@ -634,7 +636,7 @@ final class ServerThread extends commonThread.ClientThread {
 		    }
 		    else {
 			KonaneServer.boardGrid.makeMove(tempMove);
-			if (KonaneServer.boardGrid.getAllMoves(Konane.WHITE).size() == 0) {
+			if (!KonaneServer.boardGrid.hasAnyMove(Konane.WHITE)) {
 			    print("BLACK won.");
 			    won = Konane.BLACK;
 			    break;
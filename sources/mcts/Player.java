@@ -0,0 +1,61 @@
+/* Player.java
+ * Konane Game System
+ * MIT IEEE IAP Programming Competition 2001
+ */
+
+package mcts;
+
+import konaneCommon.*;
+import konaneEngine.*;
+
+/** A player that searches with {@link konaneEngine.MonteCarloSearch}.
+
+ * <p>Each move is given its share of the remaining time by a
+ * {@link konaneEngine.TimeManager} and spends all of it on playouts. The
+ * search trees are kept from move to move. After every move the player
+ * prints the number of playouts, the playouts per second and the number
+ * of playouts kept from the previous move.</p>
+
+ * <p>The search uses one thread per processor and the usual exploration
+ * constant unless the system properties <code>mcts.threads</code> and
+ * <code>mcts.exploration</code> say otherwise. Load it in the simulator as
+ * <code>mcts</code>.</p>
+ */
+public class Player extends konaneCommon.Player {
+
+    /** The number of search threads. */
+    public final static int THREADS =
+	Integer.getInteger("mcts.threads",
+			   Runtime.getRuntime().availableProcessors())
+	.intValue();
+
+    /** The UCT exploration constant. */
+    public final static double EXPLORATION =
+	Double.parseDouble(System.getProperty(
+	    "mcts.exploration",
+	    String.valueOf(MonteCarloSearch.DEFAULT_EXPLORATION)));
+
+    private final MonteCarloSearch search =
+	new MonteCarloSearch(THREADS, EXPLORATION, System.nanoTime());
+
+    public Move makeMove(BoardGrid oldBoard, long allowedTime) {
+	TimeManager time = new TimeManager(oldBoard, allowedTime);
+	int move = search.search(oldBoard, side, time.getHardDeadline());
+	if (Konane.verbose) {
+	    System.out.println(search.getStats());
+	}
+	if (move == MoveList.NO_MOVE) {
+	    return new Move(-1, -1, -1, -1, side, "**FORFEIT**");
+	}
+	return Move.of(oldBoard.getWidth(), oldBoard.getHeight(),
+		       MoveList.initialCol(move), MoveList.initialRow(move),
+		       MoveList.finalCol(move), MoveList.finalRow(move),
+		       side);
+    }
+
+    /** Stops the search threads. */
+    public void endGame() {
+	search.shutdown();
+    }
+
+}
@@ -0,0 +1,43 @@
+/* Player.java
+ * Konane Game System
+ * MIT IEEE IAP Programming Competition 2001
+ */
+
+package runaway;
+
+import konaneCommon.*;
+
+/** A player that never moves in time.
+
+ * <p>It keeps the processor busy counting moves until the referee calls
+ * its move off, and then forfeits, so it loses every game on time. It
+ * exists to check that the referee stops players that overrun their
+ * clock: see {@link simulator.LeakCheck}. Its moves take turns watching
+ * only the deadline's cancellation flag and only the thread's interrupt,
+ * so both ways of calling a move off are exercised.</p>
+
+ * <p>Load it in the simulator as <code>runaway</code>.</p>
+ */
+public class Player extends konaneCommon.Player {
+
+    /** The number of moves begun by all runaway players. */
+    private static int moves;
+
+    public Move makeMove(BoardGrid oldBoard, long allowedTime) {
+	while (!Thread.currentThread().isInterrupted()) {
+	    oldBoard.countMoves(side);
+	}
+	return new Move(-1, -1, -1, -1, side, "**FORFEIT**");
+    }
+
+    public Move makeMove(BoardGrid oldBoard, Deadline deadline) {
+	if (moves++ % 2 == 0) {
+	    return makeMove(oldBoard, deadline.getTimeLeft());
+	}
+	while (!deadline.isCancelled()) {
+	    oldBoard.countMoves(side);
+	}
+	return new Move(-1, -1, -1, -1, side, "**FORFEIT**");
+    }
+
+}
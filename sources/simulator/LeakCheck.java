@@ -0,0 +1,88 @@
+/* LeakCheck.java
+ * Konane Game System
+ * MIT IEEE IAP Programming Competition 2001
+ */
+
+package simulator;
+
+import java.io.*;
+import java.lang.management.*;
+
+/** Checks that players who run out of time do not keep running.
+
+ * <p>Plays a {@link simulator.Pool} in which every pairing includes the
+ * <code>runaway</code> player, which never moves in time, against the
+ * reference and engine players. Each game ends with the referee calling
+ * the runaway's move off. After the pool, the check measures the
+ * processor time used by all threads while the program sits idle; a
+ * player thread left running would show up there. The program prints the
+ * figures and exits with status 1 if the idle threads used more than a
+ * tenth of a processor.</p>
+
+ * <p>Usage: <code>java simulator.LeakCheck [rounds [milliseconds]]</code>,
+ * by default 2 rounds of 2000 milliseconds per player.</p>
+ */
+final class LeakCheck {
+
+    /** The pairings of one round. */
+    private final static String[] PAIRINGS = {
+	"runaway reference",
+	"alphabeta runaway",
+	"runaway mcts",
+    };
+
+    /** Milliseconds over which idle processor time is measured. */
+    private final static long WINDOW = 2000;
+
+    public static void main(String[] args) throws Exception {
+	int rounds = (args.length > 0) ? Integer.parseInt(args[0]) : 2;
+	long playerTime = (args.length > 1) ? Long.parseLong(args[1]) : 2000;
+
+	File file = File.createTempFile("leakcheck", ".pairings");
+	file.deleteOnExit();
+	PrintWriter out = new PrintWriter(new FileWriter(file));
+	for (int i = 0; i < rounds; i++) {
+	    for (int j = 0; j < PAIRINGS.length; j++) {
+		out.println(PAIRINGS[j]);
+	    }
+	}
+	out.close();
+	int games = new Pool(file.getPath(), playerTime).run().size();
+
+	ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+	Thread.sleep(500);
+	long before = otherThreadsCpuTime(threads);
+	Thread.sleep(WINDOW);
+	long used = otherThreadsCpuTime(threads) - before;
+	double share = used / (WINDOW * 1e6);
+
+	System.out.println();
+	System.out.println("----------- Leak Check ------------");
+	System.out.println("Games played: " + games);
+	System.out.println("Live threads: " + Thread.activeCount());
+	System.out.println("Processor time used while idle: " +
+			   used / 1000000 + " ms in " + WINDOW + " ms (" +
+			   Math.round(share * 100) + "% of a processor)");
+	if (share > 0.1) {
+	    System.out.println("FAILED: player threads are still running.");
+	    System.exit(1);
+	}
+	System.out.println("PASSED");
+	System.exit(0);
+    }
+
+    /** Returns the processor time used so far by every live thread but
+     * the current one, in nanoseconds. */
+    private static long otherThreadsCpuTime(ThreadMXBean threads) {
+	long self = Thread.currentThread().getId();
+	long[] ids = threads.getAllThreadIds();
+	long total = 0;
+	for (int i = 0; i < ids.length; i++) {
+	    if (ids[i] != self) {
+		total += Math.max(0, threads.getThreadCpuTime(ids[i]));
+	    }
+	}
+	return total;
+    }
+
+}
@@ -0,0 +1,264 @@
+/* PlayerHost.java
+ * Konane Game System
+ * MIT IEEE IAP Programming Competition 2001
+ */
+
+package simulator;
+
+import java.io.*;
+import java.util.concurrent.*;
+import konaneCommon.*;
+
+/** The main program of a {@link simulator.Sandbox}: runs one team's
+ * players in a child JVM on behalf of the referee.
+
+ * <p>The host reads the referee's messages from standard input and
+ * answers on standard output, which it keeps for itself: the player's
+ * <code>System.out</code> is pointed at standard error. A new player is
+ * created for every game, from classes loaded once by a
+ * {@link konaneCommon.PlayerLoader}. Moves run on one long-lived thread
+ * of their own, so that the host can still read a cancellation while the
+ * player thinks; cancelling a move cancels its
+ * {@link konaneCommon.Deadline} and interrupts that thread. The host exits
+ * when its standard input closes.</p>
+
+ * <p>Pondering is started and stopped on the move thread too, so the
+ * player's threads all belong to the move thread's
+ * {@link java.lang.ThreadGroup}. The host measures the processor time
+ * the group uses during each move with a {@link konaneCommon.CpuClock}
+ * and sends it with the move.</p>
+
+ * <p>Usage: <code>java simulator.PlayerHost name</code>, where
+ * <code>name</code> is the package of the team's player.</p>
+ */
+final class PlayerHost {
+
+    private final String name;
+    private final DataInputStream in;
+    private final DataOutputStream out;
+
+    private Player player;
+
+    /** Creates the players, loading the team's classes once. */
+    private final PlayerLoader loader = new PlayerLoader();
+
+    /** The player's threads, and their clock. */
+    private final ThreadGroup group = new ThreadGroup("PlayerHost player");
+    private final CpuClock clock = new CpuClock(group);
+
+    /** Runs the moves and the calls to ponder. */
+    private final ExecutorService moves =
+	Executors.newSingleThreadExecutor(new ThreadFactory() {
+		public Thread newThread(Runnable runnable) {
+		    Thread thread = new Thread(group, runnable,
+					       "PlayerHost move");
+		    thread.setDaemon(true);
+		    return thread;
+		}
+	    });
+
+    /** The deadline and thread of the move in progress, if any. */
+    private volatile Deadline deadline;
+    private volatile Thread mover;
+
+    private PlayerHost(String name, InputStream in, OutputStream out) {
+	this.name = name;
+	this.in = new DataInputStream(new BufferedInputStream(in));
+	this.out = new DataOutputStream(new BufferedOutputStream(out));
+    }
+
+    public static void main(String[] args) throws IOException {
+	OutputStream protocol = new FileOutputStream(FileDescriptor.out);
+	System.setOut(System.err);
+	new PlayerHost(args[0], System.in, protocol).serve();
+	System.exit(0);
+    }
+
+    /** Answers the referee's messages until the input ends. */
+    private void serve() throws IOException {
+	while (true) {
+	    int op = in.read();
+	    switch (op) {
+	    case Sandbox.GAME:
+		newGame(in.readByte());
+		break;
+	    case Sandbox.MOVE:
+		long timeLeft = in.readLong();
+		startMove(Sandbox.readBoard(in), timeLeft);
+		break;
+	    case Sandbox.CANCEL:
+		cancel();
+		break;
+	    case Sandbox.PONDER:
+		startPondering(Sandbox.readBoard(in));
+		break;
+	    case Sandbox.STOP_PONDER:
+		stopPondering();
+		break;
+	    case Sandbox.END_GAME:
+		endGame();
+		player = null;
+		break;
+	    default:
+		return;
+	    }
+	}
+    }
+
+    /** Creates the player for a new game and reports whether it could. */
+    private void newGame(byte side) throws IOException {
+	String error = null;
+	try {
+	    player = loader.newPlayer(name);
+	    player.setSide(side);
+	}
+	catch (Throwable e) {
+	    player = null;
+	    error = e.toString();
+	}
+	synchronized (out) {
+	    out.writeByte(Sandbox.READY);
+	    out.writeBoolean(error == null);
+	    if (error == null) {
+		out.writeBoolean(player instanceof PonderingPlayer);
+	    }
+	    else {
+		out.writeUTF(error);
+	    }
+	    out.flush();
+	}
+    }
+
+    /** Starts a move on the move thread, which sends it when done. */
+    private void startMove(final BoardGrid board, long timeLeft) {
+	final Player player = this.player;
+	final Deadline deadline = new Deadline(timeLeft, 0);
+	this.deadline = deadline;
+	moves.execute(new Runnable() {
+		public void run() {
+		    mover = Thread.currentThread();
+		    clock.start();
+		    Move move = null;
+		    try {
+			move = player.makeMove(board, deadline);
+		    }
+		    catch (Throwable e) {
+			// Out of memory, say: the move is lost, not the host.
+			System.err.println(e.toString());
+		    }
+		    // The executor clears an interrupt that comes too late.
+		    mover = null;
+		    sendMove(move, clock.read());
+		}
+	    });
+    }
+
+    /** Calls the move in progress off. */
+    private void cancel() {
+	Deadline deadline = this.deadline;
+	Thread mover = this.mover;
+	if (deadline != null) {
+	    deadline.cancel();
+	}
+	if (mover != null) {
+	    mover.interrupt();
+	}
+    }
+
+    /** Starts the player pondering on the move thread, if it ponders. */
+    private void startPondering(final BoardGrid board) {
+	final Player player = this.player;
+	if (!(player instanceof PonderingPlayer)) {
+	    return;
+	}
+	moves.execute(new Runnable() {
+		public void run() {
+		    try {
+			((PonderingPlayer)player).startPondering(board);
+		    }
+		    catch (Exception e) {
+			System.err.println(e.toString());
+		    }
+		}
+	    });
+    }
+
+    /** Stops the player from pondering on the move thread, if it
+     * ponders, and acknowledges it. */
+    private void stopPondering() {
+	final Player player = this.player;
+	moves.execute(new Runnable() {
+		public void run() {
+		    if (player instanceof PonderingPlayer) {
+			try {
+			    ((PonderingPlayer)player).stopPondering();
+			}
+			catch (Exception e) {
+			    System.err.println(e.toString());
+			}
+		    }
+		    sendAck();
+		}
+	    });
+    }
+
+    /** Stops the player from pondering and tells it that the game is
+     * over, on the move thread. */
+    private void endGame() {
+	final Player player = this.player;
+	if (player == null) {
+	    return;
+	}
+	moves.execute(new Runnable() {
+		public void run() {
+		    try {
+			if (player instanceof PonderingPlayer) {
+			    ((PonderingPlayer)player).stopPondering();
+			}
+			player.endGame();
+		    }
+		    catch (Exception e) {
+			System.err.println(e.toString());
+		    }
+		}
+	    });
+    }
+
+    /** Tells the referee that pondering has stopped. */
+    private void sendAck() {
+	try {
+	    synchronized (out) {
+		out.writeByte(Sandbox.ACK);
+		out.flush();
+	    }
+	}
+	catch (IOException e) {
+	    // The referee has gone; the host ends when its input does.
+	}
+    }
+
+    /** Sends a move, and the nanoseconds of processor time it used, to
+     * the referee. */
+    private void sendMove(Move move, long cpuTime) {
+	try {
+	    synchronized (out) {
+		out.writeByte(Sandbox.MOVE_MADE);
+		out.writeLong(cpuTime);
+		out.writeBoolean(move != null);
+		if (move != null) {
+		    out.writeByte(move.getInitialCol());
+		    out.writeByte(move.getInitialRow());
+		    out.writeByte(move.getFinalCol());
+		    out.writeByte(move.getFinalRow());
+		    String comment = move.getComment();
+		    out.writeUTF((comment == null) ? "" : comment);
+		}
+		out.flush();
+	    }
+	}
+	catch (IOException e) {
+	    // The referee has gone; the host ends when its input does.
+	}
+    }
+
+}
@@ -2,12 +2,35 @@ package simulator;
 
 import java.io.*;
 import java.util.*;
-
+import java.util.concurrent.*;
+import konaneCommon.PlayerLoader;
+
+/** Plays a round robin of games between the pairings in a file.
+ *
+ * <p>Each pairing plays three games, varying the board dimensions and
+ * the starting package. The games are played by a fixed number of worker
+ * threads, several at a time, each game reporting to its own buffer; the
+ * reports are printed whole, in the order of the pairings, as the games
+ * finish. Each team's classes are loaded once, by its own class loader,
+ * for all its games, and unloaded when the pool has been played (see
+ * {@link konaneCommon.PlayerLoader}). Output that players print
+ * themselves still goes straight to standard output. Engine players use
+ * every processor by default, so when games run at once give them fewer
+ * threads, e.g. with <code>-Dalphabeta.threads=1</code>.</p>
+ **/
 public class Pool {
 
+    /** the default number of games played at once: one for every two
+     * processors, since a game's two players take turns **/
+    public final static int DEFAULT_GAMES =
+	Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+
     private Parser parser;
     private Vector results = new Vector();
- 
+    private long playerTime = 120000;
+    private int games = DEFAULT_GAMES;
+    private PlayerLoader loader = new PlayerLoader();
+
     public Pool(String file) {
 	try {
 	    this.parser = new Parser(new File(file));
@@ -15,7 +38,22 @@ public class Pool {
 	    System.out.println (e.toString());
 	}
 
-    }	
+    }
+
+    /** a pool whose players get <playerTime> milliseconds per game **/
+    public Pool(String file, long playerTime) {
+	this(file);
+	this.playerTime = playerTime;
+    }
+
+    /** a pool that plays up to <games> games at once **/
+    public Pool(String file, long playerTime, int games) {
+	this(file, playerTime);
+	if (games < 1) {
+	    throw new IllegalArgumentException("games must be at least 1");
+	}
+	this.games = games;
+    }
 
     /** generate a random dimensioned integer **/
     private int dimension() {
@@ -23,78 +61,122 @@ public class Pool {
         return (7 +size);
     }
 
+    /** one game of the pool, played on a worker thread **/
+    private final class Game implements Callable<Result> {
+
+	private final int width, height;
+	private final String white, black;
+	private final ByteArrayOutputStream output =
+	    new ByteArrayOutputStream();
+
+	Game(String white, String black) {
+	    this.width = dimension();
+	    this.height = dimension();
+	    this.white = white;
+	    this.black = black;
+	}
+
+	public Result call() {
+	    PrintStream out = new PrintStream(output, true);
+	    out.println();
+	    out.println("------------- New Game -------------");
+	    out.println();
+	    Result result = new Simulator(width, height, playerTime,
+					  white, black, out, loader).playGame();
+	    out.flush();
+	    return result;
+	}
+
+	/** the game's report, once it has been played **/
+	String report() {
+	    return output.toString();
+	}
 
-    /** plays two packages against one another 3 times, varying
-     * board dimensions and starting package
+    }
+
+    /** queues the three games of a pairing, varying board dimensions and
+     * starting package
      **/
-    private void playTwoInPool(String player1, String player2) {
-	String p1, p2;
-	boolean even;
-	Simulator sim;
-	Result result;
-	Vector v = new Vector();
+    private void submitPairing(ExecutorService executor,
+			       String player1, String player2,
+			       Vector games, Vector futures) {
 	for (int i = 0; i < 3; i ++) {
-	    even = ( i != 1);
-	    if (even) {
-		p1 = player1;
-		p2 = player2;
-	    } else {
-		p1 = player2;
-		p2 = player1;
-	    }
-	    System.out.println();
-	    System.out.println("------------- New Game -------------");
-	    System.out.println();
-	    sim = new Simulator( this.dimension(), this.dimension(),
-				 120000, p1, p2);
-	    result = sim.playGame();
-	    this.results.addElement(result);
-	    v.addElement(result);
-	    this.sleep(1000);
+	    boolean even = ( i != 1);
+	    Game game = even ? new Game(player1, player2) :
+		new Game(player2, player1);
+	    games.addElement(game);
+	    futures.addElement(executor.submit(game));
 	}
-	this.sleep(5000);
-	System.out.println("----------- Head-to-Head Results ------------");
-	for (int i = 0; i < v.size(); i++) 
-	    System.out.println(v.elementAt(i).toString());
- 
     }
-	 
-    private void sleep(long  millis) {
+
+    /** waits for a game and prints its report **/
+    private Result collect(Game game, Future future) {
+	Result result = null;
 	try {
-	    Thread.sleep(millis);
+	    result = (Result)future.get();
 	} catch (InterruptedException e) {
+	    Thread.currentThread().interrupt();
+	} catch (ExecutionException e) {
+	    System.out.println(e.getCause().toString());
 	}
+	System.out.print(game.report());
+	return result;
     }
-    /** @returns a Vector containing Simulator.Results **/
-    public Vector run() {
 
+    /** @returns a Vector containing Simulator.Results, in the order of
+     * the pairings **/
+    public Vector run() {
+	ExecutorService executor = Executors.newFixedThreadPool(this.games);
+	Vector games = new Vector();
+	Vector futures = new Vector();
 	while (this.parser.hasMoreLines()) {
 	    Parser.Line players = this.parser.nextLine();
-	    this.playTwoInPool(players.stringAt(0), players.stringAt(1));
+	    this.submitPairing(executor, players.stringAt(0),
+			       players.stringAt(1), games, futures);
+	}
+	executor.shutdown();
+
+	for (int i = 0; i < games.size(); i += 3) {
+	    Vector v = new Vector();
+	    for (int j = i; j < i + 3; j++) {
+		Result result = this.collect((Game)games.elementAt(j),
+					     (Future)futures.elementAt(j));
+		if (result != null) {
+		    this.results.addElement(result);
+		    v.addElement(result);
+		}
+	    }
+	    System.out.println("----------- Head-to-Head Results ------------");
+	    for (int j = 0; j < v.size(); j++)
+		System.out.println(v.elementAt(j).toString());
 	}
-	
+
+	this.loader.unloadAll();
+
 	//System.out.println("----------- Pool Results ------------");
-	//for (int i = 0; i < this.results.size(); i++) 
+	//for (int i = 0; i < this.results.size(); i++)
 	//    System.out.println(this.results.elementAt(i).toString());
-	
+
 	return this.results;
-    }   
-	    
+    }
 
-    /** main demonstrates usage of the pool; it requires a file containing 
-	pairings
+
+    /** main demonstrates usage of the pool; it requires a file containing
+	pairings, and optionally the number of games to play at once
     **/
     public static void main(String[] args) {
 	if (args.length == 0)
 	    return;
 
-	Pool p = new Pool(args[0]);
+	Pool p = (args.length > 1) ?
+	    new Pool(args[0], 120000, Integer.parseInt(args[1])) :
+	    new Pool(args[0]);
 
 	p.run();
     }
-    
 
-    
+
+
 }
 
 
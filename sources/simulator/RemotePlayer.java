@@ -0,0 +1,207 @@
+/* RemotePlayer.java
+ * Konane Game System
+ * MIT IEEE IAP Programming Competition 2001
+ */
+
+package simulator;
+
+import java.io.IOException;
+import konaneCommon.*;
+
+/** Stands in for a player that runs in a {@link simulator.Sandbox}.
+
+ * <p>Each call is passed on to the child JVM and its answer awaited, so
+ * the elapsed time the player is charged includes the round trip. When
+ * the referee calls a move off, the remote player passes the
+ * cancellation on and waits for the child's answer for the grace period
+ * of the move's deadline; a child that does not answer by then is
+ * killed, and the move counts as a null move. A player that cannot be
+ * loaded, or whose child dies, likewise returns null moves and so loses
+ * its game.</p>
+
+ * <p>The child measures the processor time of each move itself, since
+ * the player's threads are not in the referee's JVM, and sends it with
+ * the move; see {@link #getCpuTime()}. Under the processor time clock
+ * the referee may wait past the hard limit of a deadline (see
+ * {@link konaneCommon.PlayerWorker#awaitMove()}), so the remote player
+ * then waits as long as the referee does.</p>
+ */
+final class RemotePlayer extends PonderingPlayer {
+
+    private final Sandbox sandbox;
+
+    /** Whether the child's player ponders. */
+    private final boolean ponders;
+
+    /** Why the player could not be loaded, or null. */
+    private final String error;
+
+    /** The processor time of the last move, or -1 if it is not known. */
+    private long cpuTime = -1;
+
+    private RemotePlayer(Sandbox sandbox, boolean ponders, String error) {
+	this.sandbox = sandbox;
+	this.ponders = ponders;
+	this.error = error;
+    }
+
+    /** Starts a game for a team in a sandbox, reusing an idle one if
+     * possible. Never fails: see {@link #getError()}. */
+    static RemotePlayer open(String name, byte side) {
+	Sandbox sandbox = null;
+	try {
+	    sandbox = Sandbox.acquire(name);
+	    sandbox.sendGame(side);
+	    Sandbox.Reply reply = sandbox.receive(Sandbox.STARTUP * 1000000L);
+	    if (reply == null || reply.op != Sandbox.READY) {
+		sandbox.destroy();
+		return new RemotePlayer(sandbox, false,
+					"the sandbox did not start");
+	    }
+	    return new RemotePlayer(sandbox, reply.ponders,
+				    reply.ok ? null : reply.text);
+	}
+	catch (IOException e) {
+	    if (sandbox != null) {
+		sandbox.destroy();
+	    }
+	    return new RemotePlayer(sandbox, false, e.toString());
+	}
+	catch (InterruptedException e) {
+	    Thread.currentThread().interrupt();
+	    if (sandbox != null) {
+		sandbox.destroy();
+	    }
+	    return new RemotePlayer(sandbox, false, e.toString());
+	}
+    }
+
+    /** Returns why the player could not be loaded, or null if it was. */
+    String getError() {
+	return error;
+    }
+
+    /** Returns the nanoseconds of processor time the child's player used
+     * during its last move, or -1 if it is not known. */
+    synchronized long getCpuTime() {
+	return cpuTime;
+    }
+
+    /** Returns the <code>System.nanoTime()</code> until which to wait
+     * for the child's move. */
+    private static long waitLimit(Deadline deadline) {
+	if (!PlayerWorker.CPU_CLOCK) {
+	    return deadline.getHardDeadline();
+	}
+	long allowed = deadline.getSoftDeadline() - System.nanoTime();
+	return deadline.getHardDeadline() +
+	    (PlayerWorker.WALL_SLACK - 1) * Math.max(0, allowed);
+    }
+
+    public Move makeMove(BoardGrid oldBoard, long allowedTime) {
+	return makeMove(oldBoard, new Deadline(allowedTime, 0));
+    }
+
+    public Move makeMove(BoardGrid oldBoard, Deadline deadline) {
+	synchronized (this) {
+	    cpuTime = -1;
+	}
+	if (error != null || !sandbox.isAlive()) {
+	    return null;
+	}
+	Sandbox.Reply reply = null;
+	boolean interrupted = false;
+	long limit = waitLimit(deadline);
+	try {
+	    sandbox.sendBoard(Sandbox.MOVE, deadline.getTimeLeft(), oldBoard);
+	    try {
+		reply = sandbox.receive(limit - System.nanoTime());
+	    }
+	    catch (InterruptedException e) {
+		// Called off: pass it on, and give the child the grace
+		// period to answer.
+		interrupted = true;
+		sandbox.send(Sandbox.CANCEL);
+		limit = Math.max(deadline.getHardDeadline(), System.nanoTime() +
+				 deadline.getHardDeadline() -
+				 deadline.getSoftDeadline());
+		while (true) {
+		    try {
+			reply = sandbox.receive(limit - System.nanoTime());
+			break;
+		    }
+		    catch (InterruptedException again) {
+			// Still waiting for the child.
+		    }
+		}
+	    }
+	}
+	catch (IOException e) {
+	    reply = null;
+	}
+	if (interrupted) {
+	    Thread.currentThread().interrupt();
+	}
+	if (reply == null || reply.op != Sandbox.MOVE_MADE) {
+	    sandbox.destroy();
+	    return null;
+	}
+	synchronized (this) {
+	    cpuTime = reply.cpuTime;
+	}
+	if (!reply.ok) {
+	    return null;
+	}
+	return Move.of(oldBoard.getWidth(), oldBoard.getHeight(),
+		       reply.initialCol, reply.initialRow,
+		       reply.finalCol, reply.finalRow, side, reply.text);
+    }
+
+    public void startPondering(BoardGrid board) {
+	if (ponders && sandbox.isAlive()) {
+	    try {
+		sandbox.sendBoard(Sandbox.PONDER, 0, board);
+	    }
+	    catch (IOException e) {
+		sandbox.destroy();
+	    }
+	}
+    }
+
+    public void stopPondering() {
+	if (!ponders || !sandbox.isAlive()) {
+	    return;
+	}
+	Sandbox.Reply reply = null;
+	try {
+	    sandbox.send(Sandbox.STOP_PONDER);
+	    reply = sandbox.receive(Sandbox.STARTUP * 1000000L);
+	}
+	catch (IOException e) {
+	    reply = null;
+	}
+	catch (InterruptedException e) {
+	    Thread.currentThread().interrupt();
+	}
+	if (reply == null || reply.op != Sandbox.ACK) {
+	    sandbox.destroy();
+	}
+    }
+
+    /** Ends the game and returns the sandbox to the idle pool. */
+    public void endGame() {
+	if (sandbox == null) {
+	    return;
+	}
+	if (sandbox.isAlive()) {
+	    try {
+		sandbox.send(Sandbox.END_GAME);
+	    }
+	    catch (IOException e) {
+		sandbox.destroy();
+	    }
+	}
+	sandbox.release();
+    }
+
+}
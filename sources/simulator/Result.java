@@ -23,6 +23,13 @@ public final class Result {
     private  byte won = Konane.NONE;
     private int movesMade; // number of moves made
 
+    // milliseconds each player's moves took, and the processor time
+    // their threads used
+    private long whiteWallTime;
+    private long whiteCpuTime;
+    private long blackWallTime;
+    private long blackCpuTime;
+
     public Result(long totalTime, int boardWidth, int boardHeight,
 		  String whiteName, long whiteTimeLeft,
 		  String blackName, long blackTimeLeft,
@@ -41,6 +48,22 @@ public final class Result {
 	this.movesMade = movesMade;
     }
 
+    /** A result that also records the elapsed and processor time each
+     * player's moves used, in milliseconds. */
+    public Result(long totalTime, int boardWidth, int boardHeight,
+		  String whiteName, long whiteTimeLeft,
+		  String blackName, long blackTimeLeft,
+		  byte won, int movesMade,
+		  long whiteWallTime, long whiteCpuTime,
+		  long blackWallTime, long blackCpuTime) {
+	this(totalTime, boardWidth, boardHeight, whiteName, whiteTimeLeft,
+	     blackName, blackTimeLeft, won, movesMade);
+	this.whiteWallTime = whiteWallTime;
+	this.whiteCpuTime = whiteCpuTime;
+	this.blackWallTime = blackWallTime;
+	this.blackCpuTime = blackCpuTime;
+    }
+
     public long totalTime() {
 	return this.totalTime();
     }
@@ -87,6 +110,37 @@ public final class Result {
     public long blackTimeLeft() {
 	return this.blackTimeLeft;
     }
+
+    /** milliseconds WHITE's moves took **/
+    public long whiteWallTime() {
+	return this.whiteWallTime;
+    }
+
+    /** milliseconds of processor time WHITE's threads used **/
+    public long whiteCpuTime() {
+	return this.whiteCpuTime;
+    }
+
+    /** milliseconds WHITE's moves spent off the processor: waiting for
+     * it while other threads ran, or blocked **/
+    public long whiteOverhead() {
+	return Math.max(0, this.whiteWallTime - this.whiteCpuTime);
+    }
+
+    /** milliseconds BLACK's moves took **/
+    public long blackWallTime() {
+	return this.blackWallTime;
+    }
+
+    /** milliseconds of processor time BLACK's threads used **/
+    public long blackCpuTime() {
+	return this.blackCpuTime;
+    }
+
+    /** milliseconds BLACK's moves spent off the processor **/
+    public long blackOverhead() {
+	return Math.max(0, this.blackWallTime - this.blackCpuTime);
+    }
        
     public String toString() {
 	return (this.boardWidth + " x " + this.boardHeight + " Board. " +
@@ -95,7 +149,13 @@ public final class Result {
 		" playing BLACK.\n" + packageWon() + " wins in " +
 		this.movesMade + " moves.\n" +
 		"WHITE time left: " + this.whiteTimeLeft + "\n" +
-		"BLACK time left: " + this.blackTimeLeft + "\n");
+		"BLACK time left: " + this.blackTimeLeft + "\n" +
+		"WHITE time used: " + this.whiteWallTime + " (" +
+		this.whiteCpuTime + " processor, " + whiteOverhead() +
+		" overhead)\n" +
+		"BLACK time used: " + this.blackWallTime + " (" +
+		this.blackCpuTime + " processor, " + blackOverhead() +
+		" overhead)\n");
     }
        
 }
@@ -0,0 +1,317 @@
+/* Sandbox.java
+ * Konane Game System
+ * MIT IEEE IAP Programming Competition 2001
+ */
+
+package simulator;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+import konaneCommon.*;
+
+/** A child JVM that runs one team's players for the simulator.
+
+ * <p>With the system property <code>simulator.sandbox</code> set, the
+ * simulator runs every player in a JVM of its own through a
+ * {@link simulator.RemotePlayer}, so that a player's garbage collection,
+ * heap or threads cannot slow its opponent down, and a player that
+ * crashes or hangs loses its game without harming the tournament. The
+ * child runs {@link simulator.PlayerHost} and talks to the referee over
+ * its standard input and output in the compact binary protocol below.
+ * Its standard error, which also receives whatever the player prints, is
+ * that of the referee.</p>
+
+ * <p>Each child is set up by these system properties of the
+ * referee:</p>
+ * <ul>
+ * <li><code>simulator.sandbox.heap</code>, the maximum heap, by default
+ * <code>256m</code>;</li>
+ * <li><code>simulator.sandbox.processors</code>, the number of processors
+ * the child's JVM is told it has, by default 1. It sizes the JVM's
+ * garbage collector and compiler threads and is what
+ * <code>Runtime.availableProcessors()</code> returns, so players that
+ * size their searches by it start that many threads. It is only a hint:
+ * there is no CPU cap, and a child that starts more threads may use
+ * every processor of the machine. Charging processor time (see
+ * {@link konaneCommon.PlayerWorker#CPU_CLOCK}) makes that cost the
+ * player;</li>
+ * <li><code>simulator.sandbox.options</code>, further JVM options,
+ * separated by spaces.</li>
+ * </ul>
+
+ * <p>A child outlives its game: when the game ends it goes back to a pool
+ * of idle children, and the next game of the same team reuses it, with
+ * its classes already loaded and compiled. A child that failed to answer
+ * in time is killed instead. Children exit when the referee does, as
+ * their standard input closes.</p>
+
+ * <p>The protocol has one message per turn in each direction. Every
+ * message starts with one of the opcodes below; a board is sent as its
+ * width and height as bytes, followed by its tokens column by column.</p>
+ */
+final class Sandbox {
+
+    /** Referee to child: start a game. Followed by the side as a byte.
+     * Answered by {@link #READY}. */
+    final static int GAME = 1;
+
+    /** Referee to child: make a move. Followed by the milliseconds left
+     * as a long and the board. Answered by {@link #MOVE_MADE}. */
+    final static int MOVE = 2;
+
+    /** Referee to child: call the move in progress off. */
+    final static int CANCEL = 3;
+
+    /** Referee to child: start pondering. Followed by the board. */
+    final static int PONDER = 4;
+
+    /** Referee to child: stop pondering. Answered by {@link #ACK}. */
+    final static int STOP_PONDER = 5;
+
+    /** Referee to child: the game is over. */
+    final static int END_GAME = 6;
+
+    /** Child to referee: the answer to {@link #GAME}. Followed by true
+     * and a boolean, true if the player ponders, if the player was
+     * loaded; otherwise by false and the error as a UTF string. */
+    final static int READY = 7;
+
+    /** Child to referee: a move. Followed by the nanoseconds of
+     * processor time the move used as a long, or -1 if the child cannot
+     * tell, and a boolean, false for a null move; otherwise by the
+     * initial column and row and final column and row as bytes and the
+     * comment as a UTF string. */
+    final static int MOVE_MADE = 8;
+
+    /** Child to referee: pondering has stopped. */
+    final static int ACK = 9;
+
+    /** Whether the simulator runs players in sandboxes. */
+    final static boolean ENABLED = Boolean.getBoolean("simulator.sandbox");
+
+    /** Milliseconds a new child may take to start and load its player. */
+    final static long STARTUP = 30000;
+
+    /** The idle children, by team. */
+    private final static Vector idle = new Vector();
+
+    /** A message from the child. */
+    final static class Reply {
+	final int op;
+	final boolean ok;
+	final String text;
+	final boolean ponders;
+	final int initialCol, initialRow, finalCol, finalRow;
+	final long cpuTime;
+
+	Reply(int op, boolean ok, String text, boolean ponders,
+	      int initialCol, int initialRow, int finalCol, int finalRow,
+	      long cpuTime) {
+	    this.op = op;
+	    this.ok = ok;
+	    this.text = text;
+	    this.ponders = ponders;
+	    this.initialCol = initialCol;
+	    this.initialRow = initialRow;
+	    this.finalCol = finalCol;
+	    this.finalRow = finalRow;
+	    this.cpuTime = cpuTime;
+	}
+    }
+
+    /** Put on the queue when the child's output ends. */
+    private final static Reply DEAD = new Reply(-1, false, null, false,
+						 0, 0, 0, 0, -1);
+
+    private final String name;
+    private final Process process;
+    private final DataOutputStream out;
+    private final BlockingQueue<Reply> replies =
+	new LinkedBlockingQueue<Reply>();
+    private volatile boolean alive = true;
+
+    /** Starts a child for a team. */
+    private Sandbox(String name) throws IOException {
+	this.name = name;
+	List<String> command = new ArrayList<String>();
+	command.add(System.getProperty("java.home") + File.separator + "bin" +
+		    File.separator + "java");
+	command.add("-Xmx" + System.getProperty("simulator.sandbox.heap",
+						"256m"));
+	command.add("-XX:ActiveProcessorCount=" +
+		    Integer.getInteger("simulator.sandbox.processors", 1));
+	StringTokenizer options =
+	    new StringTokenizer(System.getProperty("simulator.sandbox.options",
+						   ""));
+	while (options.hasMoreTokens()) {
+	    command.add(options.nextToken());
+	}
+	command.add("-cp");
+	command.add(System.getProperty("java.class.path"));
+	command.add(PlayerHost.class.getName());
+	command.add(name);
+	process = new ProcessBuilder(command)
+	    .redirectError(ProcessBuilder.Redirect.INHERIT)
+	    .start();
+	out = new DataOutputStream(new BufferedOutputStream(
+	    process.getOutputStream()));
+	final DataInputStream in = new DataInputStream(
+	    new BufferedInputStream(process.getInputStream()));
+	Thread reader = new Thread("Sandbox " + name) {
+		public void run() {
+		    read(in);
+		}
+	    };
+	reader.setDaemon(true);
+	reader.start();
+    }
+
+    /** Returns an idle child of a team, or starts a new one. */
+    static Sandbox acquire(String name) throws IOException {
+	synchronized (idle) {
+	    for (int i = 0; i < idle.size(); i++) {
+		Sandbox sandbox = (Sandbox)idle.elementAt(i);
+		if (sandbox.name.equals(name)) {
+		    idle.removeElementAt(i);
+		    if (sandbox.alive) {
+			return sandbox;
+		    }
+		    i--;
+		}
+	    }
+	}
+	return new Sandbox(name);
+    }
+
+    /** Returns the child to the idle pool after a game, or forgets it if
+     * it has died. */
+    void release() {
+	if (alive) {
+	    synchronized (idle) {
+		idle.addElement(this);
+	    }
+	}
+    }
+
+    /** Returns true until the child has died or been killed. */
+    boolean isAlive() {
+	return alive;
+    }
+
+    /** Kills the child. */
+    void destroy() {
+	alive = false;
+	process.destroy();
+    }
+
+    /** Sends a message with no arguments. */
+    synchronized void send(int op) throws IOException {
+	out.writeByte(op);
+	out.flush();
+    }
+
+    /** Sends the start of a game. */
+    synchronized void sendGame(byte side) throws IOException {
+	out.writeByte(GAME);
+	out.writeByte(side);
+	out.flush();
+    }
+
+    /** Sends a message followed by a board, and perhaps a time. */
+    synchronized void sendBoard(int op, long timeLeft, BoardGrid board)
+	throws IOException {
+	out.writeByte(op);
+	if (op == MOVE) {
+	    out.writeLong(timeLeft);
+	}
+	writeBoard(out, board);
+	out.flush();
+    }
+
+    /** Waits for the next message from the child.
+     * @return the message, or null if none came within the timeout or the
+     * child has died.
+     */
+    Reply receive(long timeoutNanos) throws InterruptedException {
+	Reply reply = replies.poll(Math.max(0, timeoutNanos),
+				   TimeUnit.NANOSECONDS);
+	if (reply == DEAD) {
+	    // Leave it for the next caller too.
+	    replies.offer(DEAD);
+	    return null;
+	}
+	return reply;
+    }
+
+    /** Reads the child's messages until its output ends. */
+    private void read(DataInputStream in) {
+	try {
+	    while (true) {
+		int op = in.read();
+		if (op == READY) {
+		    boolean ok = in.readBoolean();
+		    String error = ok ? null : in.readUTF();
+		    boolean ponders = ok && in.readBoolean();
+		    replies.put(new Reply(op, ok, error, ponders,
+					  0, 0, 0, 0, -1));
+		}
+		else if (op == MOVE_MADE) {
+		    long cpuTime = in.readLong();
+		    if (in.readBoolean()) {
+			int initialCol = in.readByte();
+			int initialRow = in.readByte();
+			int finalCol = in.readByte();
+			int finalRow = in.readByte();
+			replies.put(new Reply(op, true, in.readUTF(), false,
+					      initialCol, initialRow,
+					      finalCol, finalRow, cpuTime));
+		    }
+		    else {
+			replies.put(new Reply(op, false, null, false,
+					      0, 0, 0, 0, cpuTime));
+		    }
+		}
+		else if (op == ACK) {
+		    replies.put(new Reply(op, true, null, false,
+					  0, 0, 0, 0, -1));
+		}
+		else {
+		    break;
+		}
+	    }
+	}
+	catch (IOException e) {
+	    // The child has died.
+	}
+	catch (InterruptedException e) {
+	    // Cannot happen: the queue is unbounded.
+	}
+	alive = false;
+	replies.offer(DEAD);
+    }
+
+    /** Writes a board in the protocol's form. */
+    static void writeBoard(DataOutputStream out, BoardGrid board)
+	throws IOException {
+	out.writeByte(board.getWidth());
+	out.writeByte(board.getHeight());
+	for (int col = 0; col < board.getWidth(); col++) {
+	    for (int row = 0; row < board.getHeight(); row++) {
+		out.writeByte(board.getTokenAt(col, row));
+	    }
+	}
+    }
+
+    /** Reads a board in the protocol's form. */
+    static BoardGrid readBoard(DataInputStream in) throws IOException {
+	int width = in.readByte();
+	int height = in.readByte();
+	byte[][] tokens = new byte[width][height];
+	for (int col = 0; col < width; col++) {
+	    in.readFully(tokens[col]);
+	}
+	return new BoardGrid(tokens, width, height);
+    }
+
+}
@@ -6,9 +6,18 @@
 
 package simulator;
 
+import java.io.PrintStream;
 import konaneCommon.*;
 
-/** Simulator **/
+/** Simulator
+
+ * <p>Players are charged the elapsed time of their moves, unless the
+ * system property <code>konane.clock</code> is <code>cpu</code>, in which
+ * case they are charged the processor time their threads use (see
+ * {@link konaneCommon.PlayerWorker}), so that games played at once do not
+ * slow each other's clocks. Either way the {@link simulator.Result}
+ * records both.</p>
+ **/
 final class Simulator {
 
     private byte      won;
@@ -16,53 +25,101 @@ final class Simulator {
 
     private String    whiteName;
     private Player    whitePlayer;
-    private long      whiteTime;
+    private long      whiteTime;    // nanoseconds left
+    private long      whiteWall;    // nanoseconds of elapsed time used
+    private long      whiteCpu;     // nanoseconds of processor time used
+    private PlayerWorker whiteWorker;
 
     private String    blackName;
     private Player    blackPlayer;
-    private long      blackTime;
+    private long      blackTime;    // nanoseconds left
+    private long      blackWall;    // nanoseconds of elapsed time used
+    private long      blackCpu;     // nanoseconds of processor time used
+    private PlayerWorker blackWorker;
 
-    private boolean   moveFinished;
-    private long      timeBegan;
-    private long      transitTime;
+    private long      transitTime;  // nanoseconds
+    private long      cpuTime;      // nanoseconds, or -1 if unknown
     private Move      playerMove;
     private long      originalTime; // arjunrn
+    private PrintStream out;          // where the game is reported
+    private PlayerLoader loader;      // creates the players
+    private boolean   ownLoader;      // unload the players after the game
+
+    /** Milliseconds a player that runs out of time is given to stop. */
+    public final static long GRACE = 1000;
 
     public Simulator(int boardWidth, int boardHeight, long playerTime,
 		     String whiteName, String blackName) {
+	this(boardWidth, boardHeight, playerTime, whiteName, blackName,
+	     System.out);
+    }
+
+    /** Sets up a game that reports its progress to <code>out</code>
+     * rather than to standard output. Several such games may run at once
+     * in separate threads. */
+    public Simulator(int boardWidth, int boardHeight, long playerTime,
+		     String whiteName, String blackName, PrintStream out) {
+	this(boardWidth, boardHeight, playerTime, whiteName, blackName,
+	     out, null);
+    }
+
+    /** Sets up a game whose players are created by <code>loader</code>,
+     * so that a tournament can load each package once for all its games.
+     * With a null loader the game loads its players itself and unloads
+     * them when it ends. */
+    public Simulator(int boardWidth, int boardHeight, long playerTime,
+		     String whiteName, String blackName, PrintStream out,
+		     PlayerLoader loader) {
+	this.out = out;
+	this.ownLoader = (loader == null);
+	this.loader = ownLoader ? new PlayerLoader() : loader;
 	won = Konane.NONE;
-	System.out.println("Initializing " + boardWidth + " by " +
+	out.println("Initializing " + boardWidth + " by " +
 			   boardHeight + " board.");
 	boardGrid = new BoardGrid(boardWidth, boardHeight);
-	System.out.println("\n" + boardGrid.toString() + "\n");
-	System.out.println("Time for each player is " + playerTime +
-			   " milliseconds.");
+	out.println("\n" + boardGrid.toString() + "\n");
+	out.println("Time for each player is " + playerTime +
+			   " milliseconds" +
+		    (PlayerWorker.CPU_CLOCK ? " of processor time." : "."));
 	this.originalTime = playerTime; //arjunrn
-	this.whiteTime = playerTime;
-	this.blackTime = playerTime;
+	this.whiteTime = playerTime * 1000000L;
+	this.blackTime = playerTime * 1000000L;
 	this.whiteName = whiteName;
 	this.blackName = blackName;
 	whitePlayer = loadPlayer(whiteName, Konane.WHITE);
 	blackPlayer = loadPlayer(blackName, Konane.BLACK);
-	System.out.println("Beginning game.\n\n");
+	whiteWorker = new PlayerWorker(whitePlayer, "WHITE player");
+	blackWorker = new PlayerWorker(blackPlayer, "BLACK player");
+	out.println("Beginning game.\n\n");
     }
 
     private Player loadPlayer(String playerName, byte playerSide) {
-	ClassLoader classLoader = new PlayerClassLoader();
-	System.out.println("Trying to load " +
+	out.println("Trying to load " +
 			   Konane.sideToString(playerSide) + " player: " +
 			   playerName);
+	if (Sandbox.ENABLED) {
+	    RemotePlayer remote = RemotePlayer.open(playerName, playerSide);
+	    remote.setSide(playerSide);
+	    if (remote.getError() != null) {
+		// The player will lose by returning null moves.
+		out.println(remote.getError());
+	    }
+	    else {
+		out.println(Konane.sideToString(playerSide) +
+			    " player loaded in a sandbox.");
+	    }
+	    return remote;
+	}
 	Player player = null;
 	try {
-	    player = (Player)classLoader.loadClass(playerName +
-						   ".Player").newInstance();
+	    player = loader.newPlayer(playerName);
 	}
 	catch (Exception e) {
-	    System.out.println(e.toString());
+	    out.println(e.toString());
 	    System.exit(1);
 	}
 	player.setSide(playerSide);
-	System.out.println(Konane.sideToString(playerSide) +
+	out.println(Konane.sideToString(playerSide) +
 			   " player loaded.");
 	return player;
     }
@@ -73,121 +130,195 @@ final class Simulator {
 	while (true) {
 
 	    //WHITE's move
-	    System.out.println("-----------------------------------");
-	    System.out.println("Beginning WHITE's turn. Time left: " +
-			       whiteTime);
-	    System.out.println(boardGrid.toString());
-	    moveFinished = false;
-	    PlayerThread whiteThread = new PlayerThread(whitePlayer,
-							whiteTime, this);
-	    whiteThread.start();
+	    out.println("-----------------------------------");
+	    out.println("Beginning WHITE's turn. Time left: " +
+			       millis(whiteTime));
+	    out.println(boardGrid.toString());
+	    boolean whiteFinished = false;
+	    whiteWorker.startMove(boardGrid.copy(),
+				 new Deadline(millis(whiteTime), GRACE));
 
 	    try {
-		wait(blackTime);
+		whiteFinished = whiteWorker.awaitMove();
 	    }
 	    catch(InterruptedException e) {
 		System.err.println(e.toString());
 	    }
 
-	    if (!moveFinished) {
+	    if (!whiteFinished) {
 		terminate = true;
-		System.out.println("WHITE exceeded time limit.");
+		out.println("WHITE exceeded time limit.");
+		if (!whiteWorker.cancel()) {
+		    out.println("WHITE player did not stop.");
+		}
 	    }
-	    else {
-		whiteTime -= transitTime;
+	    transitTime = whiteWorker.getElapsed();
+	    cpuTime = cpuTime(whiteWorker, whitePlayer);
+	    whiteWall += transitTime;
+	    whiteCpu += Math.max(0, cpuTime);
+	    if (whiteFinished) {
+		playerMove = whiteWorker.getMove();
+		whiteTime -= charged(transitTime, cpuTime);
 		if (whiteTime < 0) {
 		    terminate = true;
-		    System.out.println("WHITE exceeded time limit.");
+		    out.println("WHITE exceeded time limit.");
 		}
 		else if (!boardGrid.makeMove(playerMove)) {
-		    System.out.println("WHITE returned an invalid move.");
+		    out.println("WHITE returned an invalid move.");
 		    terminate = true;
 		}
 	    }
 
 	    if (terminate) {
-		System.out.println("Terminating WHITE player.");
-		System.out.println("BLACK won.");
-		whiteThread = null;
-		System.gc();
+		out.println("Terminating WHITE player.");
+		out.println("BLACK won.");
 		won = Konane.BLACK;
 		break;
 	    }
 
-	    System.out.println("WHITE's move: " + playerMove.toString());
-	    System.out.println("  in " + transitTime + " milliseconds.");
+	    out.println("WHITE's move: " + playerMove.toString());
+	    out.println("  in " + formatMillis(transitTime) +
+			" milliseconds" + formatCpu(cpuTime) + ".");
 
-	    if (boardGrid.getAllMoves(Konane.BLACK).size() == 0) {
-		System.out.println("WHITE won.");
+	    if (!boardGrid.hasAnyMove(Konane.BLACK)) {
+		out.println("WHITE won.");
 		won = Konane.WHITE;
 		break;
 	    }
+	    startPondering(whiteWorker);
 
 	    //BLACK's move
-	    System.out.println("-----------------------------------");
-	    System.out.println("Beginning BLACK's turn. Time left: " +
-			       blackTime);
-	    System.out.println(boardGrid.toString());
-	    moveFinished = false;
-	    PlayerThread blackThread = new PlayerThread(blackPlayer,
-							blackTime, this);
-	    blackThread.start();
+	    out.println("-----------------------------------");
+	    out.println("Beginning BLACK's turn. Time left: " +
+			       millis(blackTime));
+	    out.println(boardGrid.toString());
+	    boolean blackFinished = false;
+	    blackWorker.startMove(boardGrid.copy(),
+				 new Deadline(millis(blackTime), GRACE));
 
 	    try {
-		wait(blackTime);
+		blackFinished = blackWorker.awaitMove();
 	    }
 	    catch(InterruptedException e) {
 		System.err.println(e.toString());
 	    }
 
-	    if (!moveFinished) {
+	    if (!blackFinished) {
 		terminate = true;
-		System.out.println("BLACK exceeded time limit.");
+		out.println("BLACK exceeded time limit.");
+		if (!blackWorker.cancel()) {
+		    out.println("BLACK player did not stop.");
+		}
 	    }
-	    else {
-		blackTime -= transitTime;
+	    transitTime = blackWorker.getElapsed();
+	    cpuTime = cpuTime(blackWorker, blackPlayer);
+	    blackWall += transitTime;
+	    blackCpu += Math.max(0, cpuTime);
+	    if (blackFinished) {
+		playerMove = blackWorker.getMove();
+		blackTime -= charged(transitTime, cpuTime);
 		if (blackTime < 0) {
 		    terminate = true;
-		    System.out.println("BLACK exceeded time limit.");
+		    out.println("BLACK exceeded time limit.");
 		}
 		else if (!boardGrid.makeMove(playerMove)) {
-		    System.out.println("BLACK returned an invalid move.");
+		    out.println("BLACK returned an invalid move.");
 		    terminate = true;
 		}
 	    }
 
 	    if (terminate) {
-		System.out.println("Terminating BLACK player.");
-		System.out.println("WHITE won.");
-		blackThread = null;
-		System.gc();
+		out.println("Terminating BLACK player.");
+		out.println("WHITE won.");
 		won = Konane.WHITE;
 		break;
 	    }
 
-	    System.out.println("BLACK's move: " + playerMove.toString());
-	    System.out.println("  in " + transitTime + " milliseconds.");
+	    out.println("BLACK's move: " + playerMove.toString());
+	    out.println("  in " + formatMillis(transitTime) +
+			" milliseconds" + formatCpu(cpuTime) + ".");
 
-	    if (boardGrid.getAllMoves(Konane.WHITE).size() == 0) {
-		System.out.println("BLACK won.");
+	    if (!boardGrid.hasAnyMove(Konane.WHITE)) {
+		out.println("BLACK won.");
 		won = Konane.BLACK;
 		break;
 	    }
+	    startPondering(blackWorker);
 
 	    moveCount++;
 	}
-	System.out.println("Game lasted " + moveCount + " moves.");
+	endGame(whitePlayer);
+	endGame(blackPlayer);
+	whiteWorker.close();
+	blackWorker.close();
+	if (ownLoader) {
+	    loader.unloadAll();
+	}
+	out.println("Game lasted " + moveCount + " moves.");
 
 	return new  Result(this.originalTime, this.boardGrid.getWidth(), 
 			   this.boardGrid.getHeight(), this.whiteName,
-			   this.whiteTime, this.blackName,
-			   this.blackTime,
-			   this.won, moveCount) ;
+			   millis(this.whiteTime), this.blackName,
+			   millis(this.blackTime),
+			   this.won, moveCount,
+			   millis(this.whiteWall), millis(this.whiteCpu),
+			   millis(this.blackWall), millis(this.blackCpu)) ;
        
     }
 
-    public synchronized void wakeUp() {
-	notifyAll();
+    /** Lets a {@link konaneCommon.PonderingPlayer} think about the board
+     * while its opponent moves. */
+    private void startPondering(PlayerWorker worker) {
+	worker.startPondering(boardGrid.copy());
+    }
+
+    /** Returns the nanoseconds of processor time a player's last move
+     * used, or -1 if it is not known. A player in a sandbox reports its
+     * own, since its threads are in another JVM. */
+    private static long cpuTime(PlayerWorker worker, Player player) {
+	if (player instanceof RemotePlayer) {
+	    return ((RemotePlayer)player).getCpuTime();
+	}
+	return worker.getCpuTime();
+    }
+
+    /** Stops a {@link konaneCommon.PonderingPlayer} from pondering and
+     * tells the player that the game is over. */
+    private static void endGame(Player player) {
+	try {
+	    if (player instanceof PonderingPlayer) {
+		((PonderingPlayer)player).stopPondering();
+	    }
+	    player.endGame();
+	}
+	catch (Exception e) {
+	    System.err.println(e.toString());
+	}
+    }
+
+    /** Returns the nanoseconds a move is charged: under the processor
+     * time clock as {@link konaneCommon.PlayerWorker#charge(long, long)}
+     * says, and otherwise its elapsed time. */
+    private static long charged(long elapsed, long cpu) {
+	return PlayerWorker.CPU_CLOCK ? PlayerWorker.charge(elapsed, cpu) :
+	    elapsed;
+    }
+
+    /** Formats the processor time of a move for its report, or nothing
+     * if it is not known. */
+    private static String formatCpu(long nanos) {
+	return (nanos < 0) ? "" :
+	    " (" + formatMillis(nanos) + " of processor time)";
+    }
+
+    /** Converts nanoseconds to whole milliseconds. */
+    private static long millis(long nanos) {
+	return nanos / 1000000L;
+    }
+
+    /** Formats nanoseconds as milliseconds to the microsecond. */
+    private static String formatMillis(long nanos) {
+	return String.format("%.3f", nanos / 1e6);
     }
 
     public static void main(String[] args) {
@@ -199,35 +330,6 @@ final class Simulator {
 					    args[3], args[4]);
 	simulator.playGame();
     }
-
-    private final class PlayerThread extends Thread {
-
-	private Player player;
-	private long playerTime;
-	private Simulator parent;
-
-	public PlayerThread(Player player, long playerTime,
-			    Simulator parent) {
-	    this.player = player;
-	    this.playerTime = playerTime;
-	    this.parent = parent;
-	}
-
-	public synchronized void run() {
-	    try {
-		timeBegan = System.currentTimeMillis();
-		playerMove = player.makeMove(boardGrid.copy(), playerTime);
-		transitTime = System.currentTimeMillis() - timeBegan;
-	    }
-	    catch (Exception e) {
-		System.err.println(e.toString());
-		playerMove = null;
-	    }
-	    moveFinished = true;
-	    parent.wakeUp();
-	}
-
-    }
     
 }
 